@@ -42,8 +42,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
 import java.util.List;
@@ -106,11 +104,25 @@ public class KeyHandler {
 
   public void handleKey(@NotNull Editor editor, @NotNull KeyStroke key, @NotNull DataContext context,
                         boolean allowKeyMappings) {
+    final long start = LatencyStats.start();
+    try {
+      doHandleKey(editor, key, context, allowKeyMappings);
+    }
+    finally {
+      LatencyStats.record(LatencyStats.Phase.HANDLE_KEY, start);
+    }
+  }
+
+  private void doHandleKey(@NotNull Editor editor, @NotNull KeyStroke key, @NotNull DataContext context,
+                           boolean allowKeyMappings) {
     VimPlugin.clearError();
     // All the editor actions should be performed with top level editor!!!
     // Be careful: all the EditorActionHandler implementation should correctly process InjectedEditors
     editor = EditorWindow.getTopLevelEditor(editor);
     final CommandState editorState = CommandState.getInstance(editor);
+    if (allowKeyMappings) {
+      editorState.flushExpiredMappingTimer();
+    }
 
     // If this is a "regular" character keystroke, get the character
     char chKey = key.getKeyChar() == KeyEvent.CHAR_UNDEFINED ? 0 : key.getKeyChar();
@@ -168,7 +180,7 @@ public class KeyHandler {
         shouldRecord = handleArgumentNode(editor, key, context, editorState, (ArgumentNode)node);
       }
       else {
-        if (lastWasBS && lastChar != 0 && Options.getInstance().isSet("digraph")) {
+        if (lastWasBS && lastChar != 0 && Options.DIGRAPH.get()) {
           char dig = VimPlugin.getDigraph().getDigraph(lastChar, key.getKeyChar());
           key = KeyStroke.getKeyStroke(dig);
         }
@@ -217,8 +229,18 @@ public class KeyHandler {
     }
   }
 
-  private boolean handleKeyMapping(@NotNull final Editor editor, @NotNull final KeyStroke key,
-                                   @NotNull final DataContext context) {
+  private boolean handleKeyMapping(@NotNull Editor editor, @NotNull KeyStroke key, @NotNull DataContext context) {
+    final long start = LatencyStats.start();
+    try {
+      return doHandleKeyMapping(editor, key, context);
+    }
+    finally {
+      LatencyStats.record(LatencyStats.Phase.KEY_MAPPING, start);
+    }
+  }
+
+  private boolean doHandleKeyMapping(@NotNull final Editor editor, @NotNull final KeyStroke key,
+                                     @NotNull final DataContext context) {
     final CommandState commandState = CommandState.getInstance(editor);
     commandState.stopMappingTimer();
 
@@ -240,10 +262,10 @@ public class KeyHandler {
 
     if (mapping.isPrefix(fromKeys)) {
       mappingKeys.add(key);
-      if (!application.isUnitTestMode() && Options.getInstance().isSet(Options.TIMEOUT)) {
-        commandState.startMappingTimer(new ActionListener() {
+      if (!application.isUnitTestMode() && Options.TIMEOUT.get()) {
+        commandState.startMappingTimer(new Runnable() {
           @Override
-          public void actionPerformed(ActionEvent actionEvent) {
+          public void run() {
             mappingKeys.clear();
             for (KeyStroke keyStroke : fromKeys) {
               handleKey(editor, keyStroke, new EditorDataContext(editor), false);
@@ -411,6 +433,17 @@ public class KeyHandler {
 
   private void executeCommand(@NotNull Editor editor, @NotNull KeyStroke key, @NotNull DataContext context,
                               @NotNull CommandState editorState) {
+    final long start = LatencyStats.start();
+    try {
+      doExecuteCommand(editor, key, context, editorState);
+    }
+    finally {
+      LatencyStats.record(LatencyStats.Phase.EXECUTE_COMMAND, start);
+    }
+  }
+
+  private void doExecuteCommand(@NotNull Editor editor, @NotNull KeyStroke key, @NotNull DataContext context,
+                                @NotNull CommandState editorState) {
     // Let's go through the command stack and merge it all into one command. At this time there should never
     // be more than two commands on the stack - one is the actual command and the other would be a motion
     // command argument needed by the first command
@@ -668,6 +701,19 @@ public class KeyHandler {
     }
 
     public void run() {
+      if (cmd.getType().isWrite()) {
+        LatencyStats.record(LatencyStats.Phase.WRITE_ACQUIRE, created);
+      }
+      final long start = LatencyStats.start();
+      try {
+        doRun();
+      }
+      finally {
+        LatencyStats.record(LatencyStats.Phase.ACTION, start);
+      }
+    }
+
+    private void doRun() {
       CommandState editorState = CommandState.getInstance(editor);
       boolean wasRecording = editorState.isRecording();
 
@@ -704,6 +750,8 @@ public class KeyHandler {
     private final DataContext context;
     private final Command cmd;
     private final KeyStroke key;
+    // Running the command and taking the write lock happen between the creation of the runner and its run
+    private final long created = LatencyStats.start();
   }
 
   private static enum State {
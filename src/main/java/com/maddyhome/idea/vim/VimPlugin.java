@@ -164,7 +164,7 @@ public class VimPlugin implements PersistentStateComponent<Element>, Disposable
         if (!ApplicationManager.getApplication().isUnitTestMode()) {
             final File ideaVimRc = VimScriptParser.findIdeaVimRc();
             if (ideaVimRc != null) {
-                VimScriptParser.executeFile(ideaVimRc);
+                VimScriptParser.executeIdeaVimRc(ideaVimRc);
             }
         }
 
@@ -321,7 +321,7 @@ public class VimPlugin implements PersistentStateComponent<Element>, Disposable
         if (ApplicationManager.getApplication().isUnitTestMode()) {
             getInstance().error = true;
         }
-        else if (!Options.getInstance().isSet("visualbell")) {
+        else if (!Options.VISUALBELL.get()) {
             Toolkit.getDefaultToolkit().beep();
         }
     }
@@ -28,7 +28,6 @@ import com.maddyhome.idea.vim.command.CommandState;
 import com.maddyhome.idea.vim.group.MotionGroup;
 import com.maddyhome.idea.vim.handler.MotionEditorActionHandler;
 import com.maddyhome.idea.vim.helper.EditorData;
-import com.maddyhome.idea.vim.option.BoundStringOption;
 import com.maddyhome.idea.vim.option.Options;
 import org.jetbrains.annotations.NotNull;
 
@@ -46,8 +45,7 @@ public class MotionLastColumnAction extends MotionEditorAction {
         allow = true;
       }
       else if (CommandState.getInstance(editor).getMode() == CommandState.Mode.VISUAL) {
-        BoundStringOption opt = (BoundStringOption)Options.getInstance().getOption("selection");
-        if (!opt.getValue().equals("old")) {
+        if (!Options.SELECTION.get().equals("old")) {
           allow = true;
         }
       }
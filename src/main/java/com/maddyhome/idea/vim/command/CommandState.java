@@ -22,13 +22,11 @@ import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.key.ParentNode;
-import com.maddyhome.idea.vim.option.NumberOption;
 import com.maddyhome.idea.vim.option.Options;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
-import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
@@ -44,13 +42,10 @@ public class CommandState {
   @Nullable private Command myCommand;
   @NotNull private ParentNode myCurrentNode = VimPlugin.getKey().getKeyRoot(getMappingMode());
   @NotNull private final List<KeyStroke> myMappingKeys = new ArrayList<KeyStroke>();
-  @NotNull private final Timer myMappingTimer;
   private int myFlags;
   private boolean myIsRecording = false;
 
   private CommandState() {
-    myMappingTimer = new Timer(DEFAULT_TIMEOUT_LENGTH, null);
-    myMappingTimer.setRepeats(false);
     myStates.push(new State(Mode.COMMAND, SubMode.NONE, MappingMode.NORMAL));
     myLastChangeRegister = VimPlugin.getRegister().getDefaultRegister();
   }
@@ -138,20 +133,19 @@ public class CommandState {
     return myMappingKeys;
   }
 
-  public void startMappingTimer(@NotNull ActionListener actionListener) {
-    final NumberOption timeoutLength = Options.getInstance().getNumberOption("timeoutlen");
-    if (timeoutLength != null) {
-      myMappingTimer.setInitialDelay(timeoutLength.value());
-    }
-    for (ActionListener listener : myMappingTimer.getActionListeners()) {
-      myMappingTimer.removeActionListener(listener);
-    }
-    myMappingTimer.addActionListener(actionListener);
-    myMappingTimer.start();
+  public void startMappingTimer(@NotNull Runnable action) {
+    MappingTimer.getInstance().schedule(this, action, Options.TIMEOUTLEN.get());
   }
 
   public void stopMappingTimer() {
-    myMappingTimer.stop();
+    MappingTimer.getInstance().cancel(this);
+  }
+
+  /**
+   * Handles the pending mapping keys right away if 'timeoutlen' has passed but the timer event is not delivered yet
+   */
+  public void flushExpiredMappingTimer() {
+    MappingTimer.getInstance().flushIfExpired(this);
   }
 
   @NotNull
@@ -302,7 +296,7 @@ public class CommandState {
 
   private void updateStatus() {
     final StringBuilder msg = new StringBuilder();
-    if (Options.getInstance().isSet("showmode")) {
+    if (Options.SHOWMODE.get()) {
       msg.append(getStatusString(myStates.size() - 1));
     }
 
@@ -0,0 +1,147 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.command;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flushes the pending keys of ambiguous mappings once 'timeoutlen' has passed. A single Swing timer is shared by all
+ * the editors and is always armed for the earliest deadline. The deadlines are kept as {@link System#nanoTime()}
+ * values, so a timer event delivered early only re-arms the timer and a key typed after the deadline can flush the
+ * pending keys before the event arrives.
+ */
+final class MappingTimer {
+  @NotNull
+  static MappingTimer getInstance() {
+    return ourInstance;
+  }
+
+  private MappingTimer() {
+    myTimer = new Timer(0, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        flushExpired();
+        arm();
+      }
+    });
+    myTimer.setRepeats(false);
+  }
+
+  /**
+   * Runs the action for the owner once the timeout has passed, replacing the action already pending for the owner
+   */
+  void schedule(@NotNull Object owner, @NotNull Runnable action, int timeoutMillis) {
+    remove(owner);
+    final Pending pending = new Pending(owner, action, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    // Deadlines come in order unless 'timeoutlen' has just been changed
+    int i = myPending.size();
+    while (i > 0 && myPending.get(i - 1).myDeadline - pending.myDeadline > 0) {
+      i--;
+    }
+    myPending.add(i, pending);
+    if (i == 0) {
+      arm();
+    }
+  }
+
+  void cancel(@NotNull Object owner) {
+    if (remove(owner) == 0) {
+      arm();
+    }
+  }
+
+  /**
+   * Runs the pending action for the owner if its deadline has already passed
+   *
+   * @return True if an action was run
+   */
+  boolean flushIfExpired(@NotNull Object owner) {
+    for (int i = 0; i < myPending.size(); i++) {
+      final Pending pending = myPending.get(i);
+      if (pending.myOwner == owner) {
+        if (System.nanoTime() - pending.myDeadline < 0) {
+          return false;
+        }
+        myPending.remove(i);
+        if (i == 0) {
+          arm();
+        }
+        pending.myAction.run();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void flushExpired() {
+    final long now = System.nanoTime();
+    while (!myPending.isEmpty() && now - myPending.get(0).myDeadline >= 0) {
+      myPending.remove(0).myAction.run();
+    }
+  }
+
+  private void arm() {
+    if (myPending.isEmpty()) {
+      myTimer.stop();
+      return;
+    }
+    final long remaining = myPending.get(0).myDeadline - System.nanoTime();
+    // Rounded up, a timer event is never delivered before the deadline it was armed for
+    final int delay = remaining > 0 ? (int)TimeUnit.NANOSECONDS.toMillis(remaining + 999999) : 0;
+    myTimer.setInitialDelay(delay);
+    myTimer.restart();
+  }
+
+  /**
+   * @return The index of the removed action, -1 if there was none
+   */
+  private int remove(@NotNull Object owner) {
+    for (int i = 0; i < myPending.size(); i++) {
+      if (myPending.get(i).myOwner == owner) {
+        myPending.remove(i);
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static class Pending {
+    public Pending(@NotNull Object owner, @NotNull Runnable action, long deadline) {
+      myOwner = owner;
+      myAction = action;
+      myDeadline = deadline;
+    }
+
+    @NotNull private final Object myOwner;
+    @NotNull private final Runnable myAction;
+    private final long myDeadline;
+  }
+
+  private static final MappingTimer ourInstance = new MappingTimer();
+
+  @NotNull private final Timer myTimer;
+  @NotNull private final List<Pending> myPending = new ArrayList<Pending>();
+}
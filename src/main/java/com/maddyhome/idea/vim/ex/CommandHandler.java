@@ -234,10 +234,7 @@ public abstract class CommandHandler {
     CommandState.getInstance(editor).setFlags(optFlags);
 
     try {
-      boolean res = true;
-      for (int i = 0; i < count && res; i++) {
-        res = execute(editor, context, cmd);
-      }
+      final boolean res = execute(editor, context, cmd, count);
       if (!res) {
         VimPlugin.indicateError();
       }
@@ -261,6 +258,26 @@ public abstract class CommandHandler {
    */
   public abstract boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd) throws ExException;
 
+  /**
+   * Performs the action of the handler count times, stopping at the first failure. Handlers that can do all the
+   * repeats at once override this.
+   *
+   * @param editor  The editor to perform the action in.
+   * @param context The data context
+   * @param cmd     The complete Ex command including range, command, and arguments
+   * @param count   The number of times to perform the action
+   * @return True if able to perform the command, false if not
+   * @throws ExException if the range or arguments are invalid for the command
+   */
+  protected boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd,
+                            int count) throws ExException {
+    boolean res = true;
+    for (int i = 0; i < count && res; i++) {
+      res = execute(editor, context, cmd);
+    }
+    return res;
+  }
+
   @Nullable protected final CommandName[] names;
   protected final int argFlags;
   protected final int optFlags;
@@ -21,7 +21,7 @@ package com.maddyhome.idea.vim.ex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  *
@@ -38,13 +38,31 @@ public class CommandNode {
   @NotNull
   public CommandNode addChild(char ch, CommandHandler command) {
     CommandNode res = new CommandNode(command);
-    nodes.put(ch, res);
+    int i = Arrays.binarySearch(keys, ch);
+    if (i >= 0) {
+      nodes[i] = res;
+      return res;
+    }
+
+    i = -i - 1;
+    final char[] newKeys = new char[keys.length + 1];
+    final CommandNode[] newNodes = new CommandNode[nodes.length + 1];
+    System.arraycopy(keys, 0, newKeys, 0, i);
+    System.arraycopy(nodes, 0, newNodes, 0, i);
+    newKeys[i] = ch;
+    newNodes[i] = res;
+    System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+    System.arraycopy(nodes, i, newNodes, i + 1, nodes.length - i);
+    keys = newKeys;
+    nodes = newNodes;
 
     return res;
   }
 
+  @Nullable
   public CommandNode getChild(char ch) {
-    return nodes.get(ch);
+    final int i = Arrays.binarySearch(keys, ch);
+    return i >= 0 ? nodes[i] : null;
   }
 
   @Nullable
@@ -57,5 +75,9 @@ public class CommandNode {
   }
 
   @Nullable private CommandHandler command;
-  @NotNull private final HashMap<Character, CommandNode> nodes = new HashMap<Character, CommandNode>();
+  /**
+   * The characters of the child nodes in ascending order, searched without boxing
+   */
+  @NotNull private char[] keys = new char[0];
+  @NotNull private CommandNode[] nodes = new CommandNode[0];
 }
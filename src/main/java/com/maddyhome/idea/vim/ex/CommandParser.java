@@ -32,6 +32,8 @@ import com.maddyhome.idea.vim.helper.Msg;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -84,6 +86,7 @@ public class CommandParser {
     new FindClassHandler();
     new FindFileHandler();
     new FindSymbolHandler();
+    new GlobalHandler();
     new GotoCharacterHandler();
     //new GotoLineHandler(); - not needed here
     new HelpHandler();
@@ -117,6 +120,7 @@ public class CommandParser {
     new SplitHandler();
     new SubstituteHandler();
     new UndoHandler();
+    new VimStatsHandler();
     new WriteAllHandler();
     new WriteHandler();
     new WriteNextFileHandler();
@@ -203,7 +207,7 @@ public class CommandParser {
     final String cmd = command.getCommand();
     // If there is no command, just a range, use the 'goto line' handler
     if (cmd.length() == 0) {
-      return new GotoLineHandler();
+      return gotoLineHandler;
     }
     // See if the user entered a supported command by checking each character entered
     CommandNode node = root;
@@ -225,6 +229,18 @@ public class CommandParser {
    */
   @NotNull
   public ExCommand parse(@NotNull String cmd) throws ExException {
+    // Repeated commands from @:, macros and :global are parsed only once
+    ExCommand parsed = parseCache.get(cmd);
+    if (parsed == null) {
+      parsed = parseCommand(cmd);
+      parseCache.put(cmd, parsed);
+    }
+
+    return parsed.copy();
+  }
+
+  @NotNull
+  private ExCommand parseCommand(@NotNull String cmd) throws ExException {
     // This is a complicated state machine that should probably be rewritten
     if (logger.isDebugEnabled()) {
       logger.debug("processing `" + cmd + "'");
@@ -601,10 +617,22 @@ public class CommandParser {
   }
 
   @NotNull private final CommandNode root = new CommandNode();
+  @NotNull private final CommandHandler gotoLineHandler = new GotoLineHandler();
+  /**
+   * The most recently used parse results. They are only copied, never handed out.
+   */
+  @NotNull private final Map<String, ExCommand> parseCache = new LinkedHashMap<String, ExCommand>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ExCommand> eldest) {
+      return size() > PARSE_CACHE_SIZE;
+    }
+  };
   private boolean registered = false;
 
   private static CommandParser ourInstance;
 
+  private static final int PARSE_CACHE_SIZE = 100;
+
   private static final int STATE_START = 1;
   private static final int STATE_COMMAND = 10;
   private static final int STATE_CMD_ARG = 11;
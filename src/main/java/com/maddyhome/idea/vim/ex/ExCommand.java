@@ -34,6 +34,17 @@ public class ExCommand {
     this.command = command;
   }
 
+  /**
+   * Creates a copy of the command that can be executed on its own. Handlers may change the argument and the ranges
+   * remember the lines they resolved to, so a parsed command is never executed twice.
+   *
+   * @return The copy
+   */
+  @NotNull
+  public ExCommand copy() {
+    return new ExCommand(ranges.copy(), command, argument);
+  }
+
   public int getLine(@NotNull Editor editor, DataContext context) {
     return ranges.getLine(editor, context);
   }
@@ -20,16 +20,24 @@ package com.maddyhome.idea.vim.ex;
 
 import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.helper.EditorData;
+import com.maddyhome.idea.vim.helper.EditorHelper;
 import com.maddyhome.idea.vim.ui.ExOutputPanel;
 import consulo.application.ApplicationManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
+ * The output of ex commands, kept as a list of lines. The output panel renders only the lines that are visible, so
+ * the commands that list many entries should produce lines no wider than {@link #getWidth()}.
+ *
  * @author vlan
  */
 public class ExOutputModel {
   @NotNull private final Editor myEditor;
+  @Nullable private List<String> myLines;
   @Nullable private String myText;
 
   private ExOutputModel(@NotNull Editor editor) {
@@ -47,21 +55,56 @@ public class ExOutputModel {
   }
 
   public void output(@NotNull String text) {
+    final List<String> lines = new ArrayList<String>();
+    int start = 0;
+    while (start < text.length()) {
+      int end = text.indexOf('\n', start);
+      if (end < 0) {
+        end = text.length();
+      }
+      lines.add(text.substring(start, end));
+      start = end + 1;
+    }
+    output(lines, text);
+  }
+
+  public void output(@NotNull List<String> lines) {
+    output(lines, null);
+  }
+
+  private void output(@NotNull List<String> lines, @Nullable String text) {
+    myLines = lines;
     myText = text;
     if (!ApplicationManager.getApplication().isUnitTestMode()) {
-      ExOutputPanel.getInstance(myEditor).setText(text);
+      ExOutputPanel.getInstance(myEditor).setLines(lines);
     }
   }
 
   public void clear() {
+    myLines = null;
     myText = null;
     if (!ApplicationManager.getApplication().isUnitTestMode()) {
       ExOutputPanel.getInstance(myEditor).deactivate(false);
     }
   }
 
+  /**
+   * The number of columns available for a line of the output
+   */
+  public int getWidth() {
+    final int width = EditorHelper.getScreenWidth(myEditor);
+    return width < 20 ? 80 : width;
+  }
+
   @Nullable
   public String getText() {
+    if (myText == null && myLines != null) {
+      final StringBuilder builder = new StringBuilder();
+      for (String line : myLines) {
+        builder.append(line).append('\n');
+      }
+      myText = builder.toString();
+    }
     return myText;
   }
 }
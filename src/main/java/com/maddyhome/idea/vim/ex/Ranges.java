@@ -23,6 +23,7 @@ import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.range.AbstractRange;
+import com.maddyhome.idea.vim.ex.range.SearchRange;
 import com.maddyhome.idea.vim.group.MotionGroup;
 import com.maddyhome.idea.vim.helper.EditorHelper;
 import org.jetbrains.annotations.NotNull;
@@ -42,6 +43,18 @@ public class Ranges {
     ranges = new ArrayList<Range>();
   }
 
+  /**
+   * Creates an unprocessed copy of the range list. The individual ranges are shared as they hold no state.
+   *
+   * @return The copy
+   */
+  @NotNull
+  public Ranges copy() {
+    final Ranges res = new Ranges();
+    res.ranges.addAll(ranges);
+    return res;
+  }
+
   /**
    * Adds a range to the list
    *
@@ -205,8 +218,10 @@ public class Ranges {
     startLine = defaultLine == -1 ? editor.getCaretModel().getLogicalPosition().line : defaultLine;
     endLine = startLine;
     boolean lastZero = false;
+    boolean searched = false;
     // Now process each range, moving the cursor if appropriate
     for (Range range : ranges) {
+      searched |= range instanceof SearchRange;
       startLine = endLine;
       endLine = range.getLine(editor, context, lastZero);
       if (range.isMove()) {
@@ -222,6 +237,11 @@ public class Ranges {
       startLine = endLine;
     }
 
+    // Pattern addresses set the last search pattern, highlight it once for the whole range
+    if (searched) {
+      VimPlugin.getSearch().updateSearchHighlight();
+    }
+
     done = true;
   }
 
@@ -21,11 +21,7 @@ package com.maddyhome.idea.vim.ex.handler;
 import consulo.dataContext.DataContext;
 import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.VimPlugin;
-import com.maddyhome.idea.vim.command.CommandState;
-import com.maddyhome.idea.vim.command.SelectionType;
-import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.*;
-import com.maddyhome.idea.vim.helper.EditorHelper;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -39,17 +35,31 @@ public class CopyTextHandler extends CommandHandler {
     }, RANGE_OPTIONAL | ARGUMENT_REQUIRED | WRITABLE);
   }
 
+  /**
+   * Running ":t." count times copies the current line count times below itself, so all the copies are made in one go
+   * instead of running the command again for each of them.
+   */
+  @Override
+  protected boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd,
+                            int count) throws ExException {
+    if (count > 1 && cmd.getRanges().size() == 0 && cmd.getArgument().trim().equals(".")) {
+      return copyLines(editor, context, cmd, count);
+    }
+
+    return super.execute(editor, context, cmd, count);
+  }
+
   public boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd) throws ExException {
-    TextRange range = cmd.getTextRange(editor, context, false);
+    return copyLines(editor, context, cmd, 1);
+  }
 
-    final ExCommand argumentCmd = CommandParser.getInstance().parse(cmd.getArgument());
-    int line = argumentCmd.getRanges().getFirstLine(editor, context);
-    int offset = VimPlugin.getMotion().moveCaretToLineStart(editor, line + 1);
+  private static boolean copyLines(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd,
+                                   int count) throws ExException {
+    final LineRange range = cmd.getLineRange(editor, context);
 
-    String text = EditorHelper.getText(editor, range.getStartOffset(), range.getEndOffset());
-    VimPlugin.getCopy().putText(editor, context, offset, text, SelectionType.LINE_WISE, 1, true,
-                                                  false, CommandState.SubMode.NONE);
+    final ExCommand argumentCmd = CommandParser.getInstance().parse(cmd.getArgument());
+    final int line = argumentCmd.getRanges().getFirstLine(editor, context);
 
-    return true;
+    return VimPlugin.getChange().copyLines(editor, range, line, count);
   }
 }
@@ -24,13 +24,15 @@ import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.ex.CommandHandler;
 import com.maddyhome.idea.vim.ex.ExCommand;
 import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptCache;
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptCommandHandler;
 import consulo.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
 /**
  *
  */
-public class DigraphHandler extends CommandHandler {
+public class DigraphHandler extends CommandHandler implements VimScriptCommandHandler {
   public DigraphHandler() {
     super("dig", "raphs", ARGUMENT_OPTIONAL);
   }
@@ -44,5 +46,16 @@ public class DigraphHandler extends CommandHandler {
     return VimPlugin.getDigraph().parseCommandLine(editor, cmd.getArgument());
   }
 
+  @Override
+  public void execute(@NotNull ExCommand cmd) throws ExException {
+    // Without an editor the digraphs can only be defined, not listed
+    final String arg = cmd.getArgument();
+    if (arg.length() > 0) {
+      // Recorded first, so the digraphs defined before a bad one are replayed as well
+      VimScriptCache.recordDigraphs(arg);
+      VimPlugin.getDigraph().defineDigraphs(arg);
+    }
+  }
+
   private static final Logger logger = Logger.getInstance(DigraphHandler.class.getName());
 }
@@ -0,0 +1,246 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.ex.handler;
+
+import com.maddyhome.idea.vim.EventFacade;
+import com.maddyhome.idea.vim.VimPlugin;
+import com.maddyhome.idea.vim.ex.*;
+import com.maddyhome.idea.vim.group.MotionGroup;
+import com.maddyhome.idea.vim.helper.EditorHelper;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
+import com.maddyhome.idea.vim.regexp.CharPointer;
+import com.maddyhome.idea.vim.regexp.RegExp;
+import consulo.codeEditor.Editor;
+import consulo.dataContext.DataContext;
+import consulo.document.Document;
+import consulo.document.event.DocumentAdapter;
+import consulo.document.event.DocumentEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Handles :global and :vglobal. Like Vim this works in two passes: all the lines matching the pattern are marked
+ * first and the command is then executed for each marked line that still exists.
+ */
+public class GlobalHandler extends CommandHandler {
+  public GlobalHandler() {
+    super(new CommandName[]{
+      new CommandName("g", "lobal"),
+      new CommandName("v", "global")
+    }, RANGE_OPTIONAL | ARGUMENT_REQUIRED);
+  }
+
+  public boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd) throws ExException {
+    if (ourRunning) {
+      throw new ExException(MessageHelper.message(Msg.E147));
+    }
+
+    final String arg = cmd.getArgument();
+    boolean invert = cmd.getCommand().charAt(0) == 'v';
+    int i = 0;
+    if (!invert && arg.startsWith("!")) {
+      invert = true;
+      i++;
+    }
+    if (i >= arg.length()) {
+      throw new ExException(MessageHelper.message(Msg.e_invarg, arg));
+    }
+
+    final char delimiter = arg.charAt(i);
+    if (Character.isLetterOrDigit(delimiter)) {
+      throw new ExException(MessageHelper.message(Msg.E146));
+    }
+    if (delimiter == '\\' || delimiter == '"' || delimiter == '|') {
+      throw new ExException(MessageHelper.message(Msg.e_invarg, arg));
+    }
+
+    final CharPointer start = new CharPointer(arg).ref(i + 1);
+    final CharPointer end = RegExp.skip_regexp(start.ref(0), delimiter, true);
+    String pattern = arg.substring(start.pointer(), end.pointer());
+    final String command = end.end() ? "" : arg.substring(end.pointer() + 1).trim();
+
+    // An empty pattern means the last search pattern
+    if (pattern.isEmpty()) {
+      pattern = VimPlugin.getSearch().getLastPattern();
+      if (pattern == null) {
+        throw new ExException(MessageHelper.message(Msg.e_noprevre));
+      }
+    }
+
+    // The default range for :global is the whole file
+    final LineRange range = cmd.getRanges().size() == 0 ? new LineRange(0, EditorHelper.getLineCount(editor) - 1)
+                                                        : cmd.getLineRange(editor, context);
+
+    final int[] lines = VimPlugin.getSearch().findMatchingLines(editor, pattern, range.getStartLine(),
+                                                                range.getEndLine(), invert);
+    if (lines == null) {
+      return false;
+    }
+    if (lines.length == 0) {
+      VimPlugin.showMessage(MessageHelper.message(invert ? Msg.e_patfoundall : Msg.e_patnotf2, pattern));
+      return true;
+    }
+
+    ourRunning = true;
+    try {
+      return executeOnLines(editor, context, command, lines);
+    }
+    finally {
+      ourRunning = false;
+    }
+  }
+
+  private static boolean executeOnLines(@NotNull Editor editor, @NotNull DataContext context, @NotNull String command,
+                                        @NotNull int[] lines) throws ExException {
+    // Without a command just go to the last marked line
+    if (command.isEmpty()) {
+      final int lastLine = lines[lines.length - 1];
+      MotionGroup.moveCaret(editor, VimPlugin.getMotion().moveCaretToLineStartSkipLeading(editor, lastLine));
+      return true;
+    }
+
+    final CommandParser parser = CommandParser.getInstance();
+    ExCommand lineCommand = parser.parse(command);
+    final CommandHandler handler = parser.getCommandHandler(lineCommand);
+    if (handler == null) {
+      throw new InvalidCommandException(MessageHelper.message(Msg.NOT_EX_CMD, lineCommand.getCommand()), command);
+    }
+    if ((handler.getArgFlags() & WRITABLE) != 0 && !editor.getDocument().isWritable()) {
+      VimPlugin.indicateError();
+      return false;
+    }
+
+    // :g/pat/d is by far the most common use so the marked lines are deleted in one go
+    if (handler instanceof DeleteLinesHandler && lineCommand.getRanges().size() == 0 &&
+        lineCommand.getArgument().isEmpty()) {
+      VimPlugin.getRegister().selectRegister(VimPlugin.getRegister().getDefaultRegister());
+      return VimPlugin.getChange().deleteLines(editor, lines);
+    }
+
+    final Document document = editor.getDocument();
+    final MarkedLines marked = new MarkedLines(lines);
+    EventFacade.getInstance().addDocumentListener(document, marked);
+    try {
+      for (int line = marked.next(); line >= 0; line = marked.next()) {
+        if (line >= EditorHelper.getLineCount(editor)) {
+          break;
+        }
+        MotionGroup.moveCaret(editor, EditorHelper.getLineStartOffset(editor, line));
+        // Ranges remember the lines they resolved to so the command is parsed again for every line
+        if (lineCommand == null) {
+          lineCommand = parser.parse(command);
+        }
+        if (!handler.process(editor, context, lineCommand, 1)) {
+          return false;
+        }
+        lineCommand = null;
+      }
+    }
+    finally {
+      EventFacade.getInstance().removeDocumentListener(document, marked);
+    }
+
+    return true;
+  }
+
+  /**
+   * Keeps the marked lines in step with the document while the command runs. Lines deleted by the command, or
+   * joined to the line above, lose their mark and the lines after a change are shifted. The lines still to be visited are in ascending order, so a
+   * change above all of them is a single shift that costs nothing per line.
+   */
+  private static class MarkedLines extends DocumentAdapter {
+    public MarkedLines(@NotNull int[] lines) {
+      myLines = lines;
+    }
+
+    /**
+     * @return The next marked line that still exists, -1 if there are no more
+     */
+    public int next() {
+      while (myNext < myLines.length) {
+        final int line = myLines[myNext++];
+        if (line != DELETED) {
+          return line + myShift;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public void beforeDocumentChange(@NotNull DocumentEvent e) {
+      final Document document = e.getDocument();
+      final int offset = e.getOffset();
+      final int changeLine = document.getLineNumber(offset);
+      final int endLine = document.getLineNumber(offset + e.getOldLength());
+      // A change of whole lines removes the lines inside the old fragment. Any other change keeps the changed line
+      // and removes the lines after it up to the last line of the fragment, as the rest of that is joined to it.
+      final boolean wholeLines = document.getLineStartOffset(changeLine) == offset &&
+                                document.getLineStartOffset(endLine) == offset + e.getOldLength();
+      final int firstRemoved = wholeLines ? changeLine : changeLine + 1;
+      final int lastRemoved = wholeLines ? endLine - 1 : endLine;
+      final CharSequence newFragment = e.getNewFragment();
+      int delta = changeLine - endLine;
+      for (int i = 0; i < newFragment.length(); i++) {
+        if (newFragment.charAt(i) == '\n') {
+          delta++;
+        }
+      }
+      // A change that keeps the number of lines edits them in place, as when lines are shifted
+      if (delta == 0) {
+        return;
+      }
+
+      int first = myNext;
+      while (first < myLines.length && myLines[first] == DELETED) {
+        first++;
+      }
+      if (first == myLines.length) {
+        return;
+      }
+      if (myLines[first] + myShift > lastRemoved) {
+        myShift += delta;
+        return;
+      }
+
+      for (int i = myLines.length - 1; i >= first; i--) {
+        if (myLines[i] == DELETED) {
+          continue;
+        }
+        final int line = myLines[i] + myShift;
+        if (line > lastRemoved) {
+          myLines[i] += delta;
+        }
+        else if (line >= firstRemoved) {
+          myLines[i] = DELETED;
+        }
+        else {
+          break;
+        }
+      }
+    }
+
+    private static final int DELETED = Integer.MIN_VALUE;
+
+    @NotNull private final int[] myLines;
+    private int myNext = 0;
+    private int myShift = 0;
+  }
+
+  private static boolean ourRunning = false;
+}
@@ -126,35 +126,37 @@ public class HistoryHandler extends CommandHandler {
       return false;
     }
 
+    final ExOutputModel output = ExOutputModel.getInstance(editor);
+    final int width = output.getWidth();
     StringBuilder res = new StringBuilder();
     switch (key.charAt(0)) {
       case 'c':
-        res.append(processKey(HistoryGroup.COMMAND, f, l));
+        res.append(processKey(HistoryGroup.COMMAND, f, l, width));
         break;
       case 's':
-        res.append(processKey(HistoryGroup.SEARCH, f, l));
+        res.append(processKey(HistoryGroup.SEARCH, f, l, width));
         break;
       case 'e':
-        res.append(processKey(HistoryGroup.EXPRESSION, f, l));
+        res.append(processKey(HistoryGroup.EXPRESSION, f, l, width));
         break;
       case 'i':
-        res.append(processKey(HistoryGroup.INPUT, f, l));
+        res.append(processKey(HistoryGroup.INPUT, f, l, width));
         break;
       case 'a':
-        res.append(processKey(HistoryGroup.COMMAND, f, l));
-        res.append(processKey(HistoryGroup.SEARCH, f, l));
-        res.append(processKey(HistoryGroup.EXPRESSION, f, l));
-        res.append(processKey(HistoryGroup.INPUT, f, l));
+        res.append(processKey(HistoryGroup.COMMAND, f, l, width));
+        res.append(processKey(HistoryGroup.SEARCH, f, l, width));
+        res.append(processKey(HistoryGroup.EXPRESSION, f, l, width));
+        res.append(processKey(HistoryGroup.INPUT, f, l, width));
         break;
     }
 
-    ExOutputModel.getInstance(editor).output(res.toString());
+    output.output(res.toString());
 
     return true;
   }
 
   @NotNull
-  private String processKey(String key, int start, int end) {
+  private String processKey(String key, int start, int end, int width) {
     if (logger.isDebugEnabled()) {
       logger.debug("process " + key + " " + start + "," + end);
     }
@@ -167,7 +169,9 @@ public class HistoryHandler extends CommandHandler {
     List<HistoryGroup.HistoryEntry> entries = VimPlugin.getHistory().getEntries(key, start, end);
     for (HistoryGroup.HistoryEntry entry : entries) {
       String num = Integer.toString(entry.getNumber());
-      res.append(spaces.substring(num.length())).append(num).append("  ").append(entry.getEntry()).append("\n");
+      final String text = entry.getEntry();
+      res.append(spaces.substring(num.length())).append(num).append("  ");
+      res.append(text.length() > width - 9 ? text.substring(0, Math.max(width - 9, 0)) : text).append("\n");
     }
 
     return res.toString();
@@ -28,6 +28,7 @@ import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.helper.EditorHelper;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.maddyhome.idea.vim.helper.StringHelper.*;
@@ -47,10 +48,13 @@ public class JumpsHandler extends CommandHandler {
     int spot = VimPlugin.getMark().getJumpSpot();
 
     String spaces = "     ";
-    StringBuilder text = new StringBuilder();
-    text.append("  jump line  col file/text\n");
+    final ExOutputModel output = ExOutputModel.getInstance(editor);
+    final int width = output.getWidth();
+    final List<String> lines = new ArrayList<String>();
+    lines.add("  jump line  col file/text");
     int i = jumps.size();
     for (Jump jump : jumps) {
+      final StringBuilder text = new StringBuilder();
       if (i - spot - 1 == 0) {
         text.append("> ");
       }
@@ -72,21 +76,22 @@ public class JumpsHandler extends CommandHandler {
       text.append(" ");
       VirtualFile vf = EditorData.getVirtualFile(editor);
       if (vf != null && vf.getPath().equals(jump.getFilename())) {
-        text.append(toKeyNotation(stringToKeys(EditorHelper.getLineText(editor, jump.getLogicalLine()).trim())));
+        final String lineText = EditorHelper.getLineText(editor, jump.getLogicalLine()).trim();
+        text.append(toKeyNotation(lineText, width - text.length()));
       }
       else {
         text.append(jump.getFilename());
       }
 
-      text.append("\n");
+      lines.add(text.toString());
       i--;
     }
 
     if (spot == -1) {
-      text.append(">\n");
+      lines.add(">");
     }
 
-    ExOutputModel.getInstance(editor).output(text.toString());
+    output.output(lines);
 
     return true;
   }
@@ -23,7 +23,9 @@ import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.ex.CommandHandler;
 import com.maddyhome.idea.vim.ex.ExCommand;
 import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptCache;
 import com.maddyhome.idea.vim.ex.vimscript.VimScriptCommandHandler;
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptExpression;
 import com.maddyhome.idea.vim.ex.vimscript.VimScriptGlobalEnvironment;
 import com.maddyhome.idea.vim.ex.vimscript.VimScriptParser;
 import org.jetbrains.annotations.NotNull;
@@ -36,7 +38,8 @@ import java.util.regex.Pattern;
  * @author vlan
  */
 public class LetHandler extends CommandHandler implements VimScriptCommandHandler {
-  private static Pattern SIMPLE_ASSIGNMENT = Pattern.compile("([A-Za-z_][A-Za-z_0-9]*)[ \\t]*=[ \\t]*(.*)");
+  private static Pattern SIMPLE_ASSIGNMENT =
+    Pattern.compile("((?:g:)?[A-Za-z_][A-Za-z_0-9]*)[ \\t]*([-+.]?=)[ \\t]*(.*)");
 
   public LetHandler() {
     super("let", "", RANGE_FORBIDDEN | ARGUMENT_OPTIONAL);
@@ -58,13 +61,22 @@ public class LetHandler extends CommandHandler implements VimScriptCommandHandle
     else {
       final Matcher matcher = SIMPLE_ASSIGNMENT.matcher(argument);
       if (matcher.matches()) {
-        final String name = matcher.group(1);
+        final String name = VimScriptExpression.getVariableName(matcher.group(1));
         // TODO: Check that 'name' is global
-        final String expression = matcher.group(2);
+        final String operator = matcher.group(2);
+        final String expression = matcher.group(3);
         final VimScriptGlobalEnvironment env = VimScriptGlobalEnvironment.getInstance();
         final Map<String, Object> globals = env.getVariables();
-        final Object value = VimScriptParser.evaluate(expression, globals);
+        Object value = VimScriptParser.evaluate(expression, globals);
+        if (operator.length() > 1) {
+          final Object oldValue = globals.get(name);
+          if (oldValue == null) {
+            throw new ExException(String.format("Undefined variable: %s", name));
+          }
+          value = VimScriptExpression.applyAssignment(operator.charAt(0), oldValue, value);
+        }
         globals.put(name, value);
+        VimScriptCache.recordVariable(name, value);
       }
       else {
         throw new ExException("Only simple '=' assignments are supported in 'let' expressions");
@@ -23,6 +23,7 @@ import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.MappingMode;
 import com.maddyhome.idea.vim.ex.*;
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptCache;
 import com.maddyhome.idea.vim.ex.vimscript.VimScriptCommandHandler;
 import consulo.util.lang.StringUtil;
 import org.jetbrains.annotations.NotNull;
@@ -98,6 +99,8 @@ public class MapHandler extends CommandHandler implements VimScriptCommandHandle
           }
           VimPlugin.getKey().putKeyMapping(modes, arguments.getFromKeys(), arguments.getToKeys(), null,
                                            commandInfo.isRecursive());
+          VimScriptCache.recordMapping(modes, arguments.getFromKeys(), arguments.getToKeys(),
+                                       commandInfo.isRecursive());
           return true;
 
         }
@@ -28,9 +28,9 @@ import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.helper.EditorHelper;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.List;
 
-import static com.maddyhome.idea.vim.helper.StringHelper.stringToKeys;
 import static com.maddyhome.idea.vim.helper.StringHelper.toKeyNotation;
 
 /**
@@ -47,9 +47,12 @@ public class MarksHandler extends CommandHandler {
     List<Mark> marks = VimPlugin.getMark().getMarks(editor);
 
     String spaces = "     ";
-    StringBuilder text = new StringBuilder();
-    text.append("mark  line  col file/text\n");
+    final ExOutputModel output = ExOutputModel.getInstance(editor);
+    final int width = output.getWidth();
+    final List<String> lines = new ArrayList<String>();
+    lines.add("mark  line  col file/text");
     for (Mark mark : marks) {
+      final StringBuilder text = new StringBuilder();
       text.append(" ");
       text.append(mark.getKey());
 
@@ -66,16 +69,17 @@ public class MarksHandler extends CommandHandler {
       text.append(" ");
       VirtualFile vf = EditorData.getVirtualFile(editor);
       if (vf != null && vf.getPath().equals(mark.getFilename())) {
-        text.append(toKeyNotation(stringToKeys(EditorHelper.getLineText(editor, mark.getLogicalLine()).trim())));
+        final String lineText = EditorHelper.getLineText(editor, mark.getLogicalLine()).trim();
+        text.append(toKeyNotation(lineText, width - text.length()));
       }
       else {
         text.append(mark.getFilename());
       }
 
-      text.append("\n");
+      lines.add(text.toString());
     }
 
-    ExOutputModel.getInstance(editor).output(text.toString());
+    output.output(lines);
 
     return true;
   }
@@ -21,11 +21,7 @@ package com.maddyhome.idea.vim.ex.handler;
 import consulo.dataContext.DataContext;
 import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.VimPlugin;
-import com.maddyhome.idea.vim.command.CommandState;
-import com.maddyhome.idea.vim.command.SelectionType;
-import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.*;
-import com.maddyhome.idea.vim.helper.EditorHelper;
 import com.maddyhome.idea.vim.helper.MessageHelper;
 import com.maddyhome.idea.vim.helper.Msg;
 import org.jetbrains.annotations.NotNull;
@@ -39,28 +35,15 @@ public class MoveTextHandler extends CommandHandler {
   }
 
   public boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd) throws ExException {
-    TextRange range = cmd.getTextRange(editor, context, false);
-    LineRange lr = cmd.getLineRange(editor, context);
-    int adj = lr.getEndLine() - lr.getStartLine() + 1;
+    final LineRange range = cmd.getLineRange(editor, context);
 
     final ExCommand argumentCmd = CommandParser.getInstance().parse(cmd.getArgument());
-    int line = argumentCmd.getRanges().getFirstLine(editor, context);
+    final int line = argumentCmd.getRanges().getFirstLine(editor, context);
 
-    if (line >= lr.getEndLine()) {
-      line -= adj;
-    }
-    else if (line >= lr.getStartLine()) {
+    if (!VimPlugin.getChange().moveLines(editor, range, line)) {
       throw new InvalidRangeException(MessageHelper.message(Msg.e_backrange));
     }
 
-    String text = EditorHelper.getText(editor, range.getStartOffset(), range.getEndOffset());
-
-    editor.getDocument().deleteString(range.getStartOffset(), range.getEndOffset());
-
-    int offset = VimPlugin.getMotion().moveCaretToLineStart(editor, line + 1);
-    VimPlugin.getCopy().putText(editor, context, offset, text, SelectionType.LINE_WISE, 1, true,
-                                                  false, CommandState.SubMode.NONE);
-
     return true;
   }
 }
@@ -26,6 +26,7 @@ import com.maddyhome.idea.vim.ex.*;
 import com.maddyhome.idea.vim.helper.StringHelper;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,18 +43,16 @@ public class RegistersHandler extends CommandHandler {
   public boolean execute(@NotNull final Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd) throws ExException {
     List<Register> registers = VimPlugin.getRegister().getRegisters();
 
-    StringBuilder text = new StringBuilder();
-    text.append("--- Registers ---\n");
+    final ExOutputModel output = ExOutputModel.getInstance(editor);
+    // Like in Vim the contents are cut at the screen width, so huge registers are never converted as a whole
+    final int width = output.getWidth() - 5;
+    final List<String> lines = new ArrayList<String>(registers.size() + 1);
+    lines.add("--- Registers ---");
     for (Register reg : registers) {
-      text.append("\"");
-      text.append(reg.getName());
-
-      text.append("   ");
-      text.append(StringHelper.toKeyNotation(reg.getKeys()));
-      text.append("\n");
+      lines.add("\"" + reg.getName() + "   " + StringHelper.toKeyNotation(reg.getKeys(), width));
     }
 
-    ExOutputModel.getInstance(editor).output(text.toString());
+    output.output(lines);
 
     return true;
   }
@@ -23,6 +23,7 @@ import consulo.codeEditor.Editor;
 import com.maddyhome.idea.vim.ex.CommandHandler;
 import com.maddyhome.idea.vim.ex.ExCommand;
 import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptCache;
 import com.maddyhome.idea.vim.ex.vimscript.VimScriptCommandHandler;
 import com.maddyhome.idea.vim.option.Options;
 import org.jetbrains.annotations.NotNull;
@@ -43,6 +44,7 @@ public class SetHandler extends CommandHandler implements VimScriptCommandHandle
   @Override
   public void execute(@NotNull ExCommand cmd) throws ExException {
     parseOptionLine(null, cmd, false);
+    VimScriptCache.recordOptions(cmd.getArgument());
   }
 
   private boolean parseOptionLine(@Nullable Editor editor, @NotNull ExCommand cmd, boolean failOnBad) {
@@ -21,15 +21,18 @@ package com.maddyhome.idea.vim.ex.handler;
 import consulo.dataContext.DataContext;
 import consulo.codeEditor.Editor;
 import consulo.codeEditor.SelectionModel;
-import consulo.util.lang.StringUtil;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.ex.CommandHandler;
 import com.maddyhome.idea.vim.ex.ExCommand;
 import com.maddyhome.idea.vim.ex.ExException;
 import com.maddyhome.idea.vim.ex.LineRange;
+import com.maddyhome.idea.vim.helper.LineSorter;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
+import com.maddyhome.idea.vim.regexp.CharPointer;
+import com.maddyhome.idea.vim.regexp.RegExp;
 import org.jetbrains.annotations.NotNull;
-
-import java.util.Comparator;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Alex Selesse
@@ -43,16 +46,71 @@ public class SortHandler extends CommandHandler {
   public boolean execute(@NotNull Editor editor, @NotNull DataContext context,
                          @NotNull ExCommand cmd) throws ExException {
     final String arg = cmd.getArgument();
-    final boolean nonEmptyArg = arg.trim().length() > 0;
 
-    final boolean reverse = nonEmptyArg && arg.contains("!");
-    final boolean ignoreCase = nonEmptyArg && arg.contains("i");
-    final boolean number = nonEmptyArg && arg.contains("n");
+    int flags = 0;
+    String pattern = null;
+    for (int i = 0; i < arg.length(); i++) {
+      final char c = arg.charAt(i);
+      if (Character.isWhitespace(c)) {
+        continue;
+      }
+      else if (c == '"') {
+        break;
+      }
+      final int flag = getFlag(c);
+      if (flag != 0) {
+        flags |= flag;
+      }
+      else if (!Character.isLetterOrDigit(c) && c != '\\' && pattern == null) {
+        final CharPointer start = new CharPointer(arg).ref(i + 1);
+        final CharPointer end = RegExp.skip_regexp(start.ref(0), c, true);
+        pattern = arg.substring(start.pointer(), end.pointer());
+        i = end.end() ? arg.length() : end.pointer();
+      }
+      else {
+        throw new ExException(MessageHelper.message(Msg.e_invarg, arg.substring(i)));
+      }
+    }
+
+    if (Integer.bitCount(flags & NUMBER_FLAGS) > 1) {
+      throw new ExException(MessageHelper.message(Msg.e_invarg, arg));
+    }
+    // An empty pattern means the last search pattern
+    if (pattern != null && pattern.isEmpty()) {
+      pattern = VimPlugin.getSearch().getLastPattern();
+      if (pattern == null) {
+        throw new ExException(MessageHelper.message(Msg.e_noprevre));
+      }
+    }
 
     final LineRange range = getLineRange(editor, context, cmd);
-    final Comparator<String> lineComparator = new LineComparator(ignoreCase, number, reverse);
 
-    return VimPlugin.getChange().sortRange(editor, range, lineComparator);
+    return VimPlugin.getChange().sortRange(editor, range, new LineSorter(flags, pattern));
+  }
+
+  private static int getFlag(char c) {
+    switch (c) {
+      case '!':
+        return LineSorter.SORT_REVERSE;
+      case 'i':
+        return LineSorter.SORT_IGNORE_CASE;
+      case 'n':
+        return LineSorter.SORT_NUMBER;
+      case 'f':
+        return LineSorter.SORT_FLOAT;
+      case 'x':
+        return LineSorter.SORT_HEX;
+      case 'o':
+        return LineSorter.SORT_OCTAL;
+      case 'b':
+        return LineSorter.SORT_BINARY;
+      case 'u':
+        return LineSorter.SORT_UNIQUE;
+      case 'r':
+        return LineSorter.SORT_PATTERN_MATCH;
+      default:
+        return 0;
+    }
   }
 
   @NotNull
@@ -90,29 +148,6 @@ public class SortHandler extends CommandHandler {
     return normalizedRange;
   }
 
-  private static class LineComparator implements Comparator<String> {
-    private final boolean myIgnoreCase;
-    private final boolean myNumber;
-    private final boolean myReverse;
-
-    public LineComparator(boolean ignoreCase, boolean number, boolean reverse) {
-      myIgnoreCase = ignoreCase;
-      myNumber = number;
-      myReverse = reverse;
-    }
-
-    @Override
-    public int compare(String o1, String o2) {
-      if (myReverse) {
-        final String tmp = o2;
-        o2 = o1;
-        o1 = tmp;
-      }
-      if (myIgnoreCase) {
-        o1 = o1.toUpperCase();
-        o2 = o2.toUpperCase();
-      }
-      return myNumber ? StringUtil.naturalCompare(o1, o2) : o1.compareTo(o2);
-    }
-  }
+  private static final int NUMBER_FLAGS = LineSorter.SORT_NUMBER | LineSorter.SORT_FLOAT | LineSorter.SORT_HEX |
+                                          LineSorter.SORT_OCTAL | LineSorter.SORT_BINARY;
 }
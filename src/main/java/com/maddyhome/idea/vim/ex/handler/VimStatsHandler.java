@@ -0,0 +1,103 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.ex.handler;
+
+import consulo.dataContext.DataContext;
+import consulo.codeEditor.Editor;
+import com.maddyhome.idea.vim.ex.CommandHandler;
+import com.maddyhome.idea.vim.ex.ExCommand;
+import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.ex.ExOutputModel;
+import com.maddyhome.idea.vim.helper.LatencyStats;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Shows and controls the key handling latency statistics:
+ * <pre>
+ *   :vimstats               show the histograms of every phase
+ *   :vimstats on / off      start or stop recording
+ *   :vimstats clear         forget everything recorded so far
+ *   :vimstats write {file}  dump the histograms with their buckets to a file
+ * </pre>
+ */
+public class VimStatsHandler extends CommandHandler {
+  public VimStatsHandler() {
+    super("vimstats", "", RANGE_FORBIDDEN | ARGUMENT_OPTIONAL);
+  }
+
+  @Override
+  public boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull ExCommand cmd) throws ExException {
+    final String arg = cmd.getArgument().trim();
+    final int space = arg.indexOf(' ');
+    final String action = space < 0 ? arg : arg.substring(0, space);
+    final String rest = space < 0 ? "" : arg.substring(space + 1).trim();
+
+    if (action.isEmpty()) {
+      ExOutputModel.getInstance(editor).output(LatencyStats.report());
+    }
+    else if (action.equals("on") && rest.isEmpty()) {
+      LatencyStats.setEnabled(true);
+    }
+    else if (action.equals("off") && rest.isEmpty()) {
+      LatencyStats.setEnabled(false);
+    }
+    else if (action.equals("clear") && rest.isEmpty()) {
+      LatencyStats.clear();
+    }
+    else if (action.equals("write") && !rest.isEmpty()) {
+      write(expandUser(rest));
+    }
+    else {
+      throw new ExException(MessageHelper.message(Msg.e_invarg, arg));
+    }
+    return true;
+  }
+
+  private static void write(@NotNull String path) throws ExException {
+    try {
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), UTF_8));
+      try {
+        LatencyStats.write(writer);
+      }
+      finally {
+        writer.close();
+      }
+    }
+    catch (IOException e) {
+      throw new ExException(MessageHelper.message(Msg.E482, path));
+    }
+  }
+
+  @NotNull
+  private static String expandUser(@NotNull String path) {
+    if (path.startsWith("~")) {
+      final String home = System.getProperty("user.home");
+      if (home != null) {
+        path = home + path.substring(1);
+      }
+    }
+    return path;
+  }
+}
@@ -63,11 +63,12 @@ public class LineNumberRange extends AbstractRange {
    * @return The zero based line number, -1 for start of file
    */
   protected int getRangeLine(@NotNull Editor editor, DataContext context, boolean lastZero) {
+    // The special lines are resolved every time since parsed commands are reused
     if (line == CURRENT_LINE) {
-      line = editor.getCaretModel().getLogicalPosition().line;
+      return editor.getCaretModel().getLogicalPosition().line;
     }
     else if (line == LAST_LINE) {
-      line = EditorHelper.getLineCount(editor) - 1;
+      return EditorHelper.getLineCount(editor) - 1;
     }
 
     return line;
@@ -79,5 +80,5 @@ public class LineNumberRange extends AbstractRange {
     return "LineNumberRange[" + "line=" + line + ", " + super.toString() + "]";
   }
 
-  private int line;
+  private final int line;
 }
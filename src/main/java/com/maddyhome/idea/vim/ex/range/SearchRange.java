@@ -47,7 +47,8 @@ public class SearchRange extends AbstractRange {
   }
 
   /**
-   * Parses the pattern into a list of subpatterns and flags
+   * Parses the pattern into a list of subpatterns and flags. The last search or substitute pattern is looked up only
+   * when the range is used because parsed commands are cached and reused.
    *
    * @param pattern The full search pattern
    */
@@ -58,16 +59,17 @@ public class SearchRange extends AbstractRange {
     StringTokenizer tok = new StringTokenizer(pattern, "\u0000");
     while (tok.hasMoreTokens()) {
       String pat = tok.nextToken();
+      // A search for just the delimiter uses the last search pattern, null stands for the last substitute pattern
       if (pat.equals("\\/")) {
-        patterns.add(VimPlugin.getSearch().getLastSearch());
+        patterns.add("/");
         flags.add(Command.FLAG_SEARCH_FWD);
       }
       else if (pat.equals("\\?")) {
-        patterns.add(VimPlugin.getSearch().getLastSearch());
+        patterns.add("?");
         flags.add(Command.FLAG_SEARCH_REV);
       }
       else if (pat.equals("\\&")) {
-        patterns.add(VimPlugin.getSearch().getLastPattern());
+        patterns.add(null);
         flags.add(Command.FLAG_SEARCH_FWD);
       }
       else {
@@ -101,6 +103,12 @@ public class SearchRange extends AbstractRange {
     int pos = -1;
     for (int i = 0; i < patterns.size(); i++) {
       String pattern = patterns.get(i);
+      if (pattern == null) {
+        pattern = VimPlugin.getSearch().getLastPattern();
+        if (pattern == null) {
+          return -1;
+        }
+      }
       int flag = flags.get(i);
       if ((flag & Command.FLAG_SEARCH_FWD) != 0 && !lastZero) {
         pos = VimPlugin.getMotion().moveCaretToLineEnd(editor, line, true);
@@ -109,7 +117,7 @@ public class SearchRange extends AbstractRange {
         pos = VimPlugin.getMotion().moveCaretToLineStart(editor, line);
       }
 
-      pos = VimPlugin.getSearch().search(editor, pattern, pos, 1, flag);
+      pos = VimPlugin.getSearch().searchForRange(editor, pattern, pos, flag);
       if (pos == -1) {
         break;
       }
@@ -132,6 +140,9 @@ public class SearchRange extends AbstractRange {
     return "SearchRange[" + "patterns=" + patterns + ", " + super.toString() + "]";
   }
 
+  /**
+   * The search commands for each subpattern, null for the last substitute pattern
+   */
   @NotNull private final List<String> patterns = new ArrayList<String>();
   @NotNull private final List<Integer> flags = new ArrayList<Integer>();
 
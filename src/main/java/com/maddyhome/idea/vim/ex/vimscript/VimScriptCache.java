@@ -0,0 +1,426 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.ex.vimscript;
+
+import com.maddyhome.idea.vim.VimPlugin;
+import com.maddyhome.idea.vim.command.MappingMode;
+import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.option.Options;
+import consulo.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.event.KeyEvent;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Compiled form of the rc file. While the rc file is executed the effects of its commands are recorded: the mappings
+ * with their keys already parsed, the option lines and the variable values. The next time the rc file and all the
+ * files it sources have the same content the recorded effects are replayed without parsing any commands.
+ */
+public class VimScriptCache {
+  private VimScriptCache() {
+  }
+
+  /**
+   * Replays the cached effects of the file if the cache was built from the same content.
+   *
+   * @return True if the cache was used, false if the file has to be executed
+   */
+  public static boolean replay(@NotNull File file, @NotNull byte[] content) {
+    final File cacheFile = getCacheFile();
+    if (!cacheFile.exists()) {
+      return false;
+    }
+    final List<Op> ops;
+    try {
+      ops = read(cacheFile, file, content);
+    }
+    catch (IOException e) {
+      logger.warn("Unable to read the rc cache " + cacheFile, e);
+      return false;
+    }
+    if (ops == null) {
+      return false;
+    }
+    for (Op op : ops) {
+      op.apply();
+    }
+    return true;
+  }
+
+  public static void startRecording(@NotNull File file, @NotNull byte[] content) {
+    ourRecorder = new Recorder();
+    recordSource(file, content);
+  }
+
+  public static void stopRecording() {
+    final Recorder recorder = ourRecorder;
+    ourRecorder = null;
+    if (recorder == null || !recorder.valid) {
+      return;
+    }
+    final File cacheFile = getCacheFile();
+    try {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(recorder.sources.size());
+        for (Map.Entry<String, byte[]> entry : recorder.sources.entrySet()) {
+          out.writeUTF(entry.getKey());
+          writeBytes(out, entry.getValue());
+        }
+        out.writeInt(recorder.count);
+        recorder.ops.writeTo(out);
+      }
+      finally {
+        out.close();
+      }
+    }
+    catch (IOException e) {
+      logger.warn("Unable to write the rc cache " + cacheFile, e);
+      //noinspection ResultOfMethodCallIgnored
+      cacheFile.delete();
+    }
+  }
+
+  /**
+   * Records a file whose content the recorded effects depend on.
+   */
+  public static void recordSource(@NotNull File file, @NotNull byte[] content) {
+    final Recorder recorder = ourRecorder;
+    if (recorder == null) {
+      return;
+    }
+    final byte[] hash = hash(content);
+    if (hash == null) {
+      recorder.valid = false;
+      return;
+    }
+    recorder.sources.put(file.getAbsolutePath(), hash);
+  }
+
+  public static void recordMapping(@NotNull Set<MappingMode> modes, @NotNull List<KeyStroke> fromKeys,
+                                   @Nullable List<KeyStroke> toKeys, boolean recursive) {
+    final Recorder recorder = ourRecorder;
+    if (recorder == null) {
+      return;
+    }
+    try {
+      int mask = 0;
+      for (MappingMode mode : modes) {
+        mask |= 1 << mode.ordinal();
+      }
+      recorder.out.writeByte(OP_MAPPING);
+      recorder.out.writeByte(mask);
+      recorder.out.writeBoolean(recursive);
+      writeKeys(recorder.out, fromKeys);
+      writeKeys(recorder.out, toKeys);
+      recorder.count++;
+    }
+    catch (IOException e) {
+      recorder.valid = false;
+    }
+  }
+
+  public static void recordOptions(@NotNull String line) {
+    final Recorder recorder = ourRecorder;
+    if (recorder == null) {
+      return;
+    }
+    try {
+      recorder.out.writeByte(OP_OPTIONS);
+      recorder.out.writeUTF(line);
+      recorder.count++;
+    }
+    catch (IOException e) {
+      recorder.valid = false;
+    }
+  }
+
+  public static void recordVariable(@NotNull String name, @NotNull Object value) {
+    final Recorder recorder = ourRecorder;
+    if (recorder == null) {
+      return;
+    }
+    // Only the values that have a binary form can be cached
+    if (!(value instanceof String) && !(value instanceof Integer)) {
+      recorder.valid = false;
+      return;
+    }
+    try {
+      recorder.out.writeByte(OP_VARIABLE);
+      recorder.out.writeUTF(name);
+      recorder.out.writeBoolean(value instanceof Integer);
+      if (value instanceof Integer) {
+        recorder.out.writeInt((Integer)value);
+      }
+      else {
+        recorder.out.writeUTF((String)value);
+      }
+      recorder.count++;
+    }
+    catch (IOException e) {
+      recorder.valid = false;
+    }
+  }
+
+  public static void recordDigraphs(@NotNull String line) {
+    final Recorder recorder = ourRecorder;
+    if (recorder == null) {
+      return;
+    }
+    try {
+      recorder.out.writeByte(OP_DIGRAPHS);
+      recorder.out.writeUTF(line);
+      recorder.count++;
+    }
+    catch (IOException e) {
+      recorder.valid = false;
+    }
+  }
+
+  /**
+   * @return The cached effects or null if the cache doesn't match the current content of the files
+   */
+  @Nullable
+  private static List<Op> read(@NotNull File cacheFile, @NotNull File file, @NotNull byte[] content)
+    throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      final int sources = in.readInt();
+      for (int i = 0; i < sources; i++) {
+        final File source = new File(in.readUTF());
+        final byte[] hash = readBytes(in);
+        if (i == 0) {
+          // The first source is the rc file itself
+          if (!source.equals(file.getAbsoluteFile()) || !Arrays.equals(hash, hash(content))) {
+            return null;
+          }
+        }
+        else if (!source.isFile() || !Arrays.equals(hash, hash(VimScriptParser.readBytes(source)))) {
+          return null;
+        }
+      }
+
+      final int count = in.readInt();
+      final List<Op> ops = new ArrayList<Op>(count);
+      for (int i = 0; i < count; i++) {
+        final int type = in.readByte();
+        switch (type) {
+          case OP_MAPPING:
+            final Set<MappingMode> modes = EnumSet.noneOf(MappingMode.class);
+            final int mask = in.readByte();
+            for (MappingMode mode : MappingMode.values()) {
+              if ((mask & (1 << mode.ordinal())) != 0) {
+                modes.add(mode);
+              }
+            }
+            final boolean recursive = in.readBoolean();
+            final List<KeyStroke> fromKeys = readKeys(in);
+            if (fromKeys == null) {
+              return null;
+            }
+            ops.add(new MappingOp(modes, fromKeys, readKeys(in), recursive));
+            break;
+          case OP_OPTIONS:
+            ops.add(new OptionsOp(in.readUTF()));
+            break;
+          case OP_VARIABLE:
+            final String name = in.readUTF();
+            ops.add(new VariableOp(name, in.readBoolean() ? (Object)in.readInt() : in.readUTF()));
+            break;
+          case OP_DIGRAPHS:
+            ops.add(new DigraphsOp(in.readUTF()));
+            break;
+          default:
+            return null;
+        }
+      }
+      return ops;
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  private static void writeKeys(@NotNull DataOutputStream out, @Nullable List<KeyStroke> keys) throws IOException {
+    if (keys == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(keys.size());
+    for (KeyStroke key : keys) {
+      out.writeInt(key.getKeyCode());
+      out.writeChar(key.getKeyChar());
+      out.writeInt(key.getModifiers());
+      out.writeBoolean(key.isOnKeyRelease());
+    }
+  }
+
+  @Nullable
+  private static List<KeyStroke> readKeys(@NotNull DataInputStream in) throws IOException {
+    final int size = in.readInt();
+    if (size < 0) {
+      return null;
+    }
+    final List<KeyStroke> keys = new ArrayList<KeyStroke>(size);
+    for (int i = 0; i < size; i++) {
+      final int keyCode = in.readInt();
+      final char keyChar = in.readChar();
+      final int modifiers = in.readInt();
+      final boolean onKeyRelease = in.readBoolean();
+      if (keyCode == KeyEvent.VK_UNDEFINED && keyChar != KeyEvent.CHAR_UNDEFINED) {
+        keys.add(KeyStroke.getKeyStroke(Character.valueOf(keyChar), modifiers));
+      }
+      else {
+        keys.add(KeyStroke.getKeyStroke(keyCode, modifiers, onKeyRelease));
+      }
+    }
+    return keys;
+  }
+
+  private static void writeBytes(@NotNull DataOutputStream out, @NotNull byte[] bytes) throws IOException {
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  @NotNull
+  private static byte[] readBytes(@NotNull DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readUnsignedShort()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  @Nullable
+  private static byte[] hash(@NotNull byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-1").digest(content);
+    }
+    catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  @NotNull
+  private static File getCacheFile() {
+    return new File(System.getProperty("user.home"), CACHE_FILE);
+  }
+
+  private static abstract class Op {
+    public abstract void apply();
+  }
+
+  private static class MappingOp extends Op {
+    public MappingOp(@NotNull Set<MappingMode> modes, @NotNull List<KeyStroke> fromKeys,
+                     @Nullable List<KeyStroke> toKeys, boolean recursive) {
+      myModes = modes;
+      myFromKeys = fromKeys;
+      myToKeys = toKeys;
+      myRecursive = recursive;
+    }
+
+    @Override
+    public void apply() {
+      VimPlugin.getKey().putKeyMapping(myModes, myFromKeys, myToKeys, null, myRecursive);
+    }
+
+    @NotNull private final Set<MappingMode> myModes;
+    @NotNull private final List<KeyStroke> myFromKeys;
+    @Nullable private final List<KeyStroke> myToKeys;
+    private final boolean myRecursive;
+  }
+
+  private static class OptionsOp extends Op {
+    public OptionsOp(@NotNull String line) {
+      myLine = line;
+    }
+
+    @Override
+    public void apply() {
+      Options.getInstance().parseOptionLine(null, myLine, false);
+    }
+
+    @NotNull private final String myLine;
+  }
+
+  private static class VariableOp extends Op {
+    public VariableOp(@NotNull String name, @NotNull Object value) {
+      myName = name;
+      myValue = value;
+    }
+
+    @Override
+    public void apply() {
+      VimScriptGlobalEnvironment.getInstance().getVariables().put(myName, myValue);
+    }
+
+    @NotNull private final String myName;
+    @NotNull private final Object myValue;
+  }
+
+  private static class DigraphsOp extends Op {
+    public DigraphsOp(@NotNull String line) {
+      myLine = line;
+    }
+
+    @Override
+    public void apply() {
+      try {
+        VimPlugin.getDigraph().defineDigraphs(myLine);
+      }
+      catch (ExException e) {
+        logger.warn("Unable to replay the cached digraphs: " + myLine, e);
+      }
+    }
+
+    @NotNull private final String myLine;
+  }
+
+  private static class Recorder {
+    @NotNull private final Map<String, byte[]> sources = new LinkedHashMap<String, byte[]>();
+    @NotNull private final ByteArrayOutputStream ops = new ByteArrayOutputStream();
+    @NotNull private final DataOutputStream out = new DataOutputStream(ops);
+    private int count = 0;
+    private boolean valid = true;
+  }
+
+  @Nullable private static Recorder ourRecorder = null;
+
+  private static final String CACHE_FILE = ".ideavim_rc_cache";
+  private static final int MAGIC = 0x49565243;
+  /**
+   * Has to be changed whenever the binary form or the meaning of the recorded effects changes
+   */
+  private static final int FORMAT_VERSION = 3;
+  private static final int OP_MAPPING = 1;
+  private static final int OP_OPTIONS = 2;
+  private static final int OP_VARIABLE = 3;
+  private static final int OP_DIGRAPHS = 4;
+
+  private static final Logger logger = Logger.getInstance(VimScriptCache.class.getName());
+}
@@ -0,0 +1,938 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.ex.vimscript;
+
+import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.option.NumberOption;
+import com.maddyhome.idea.vim.option.Option;
+import com.maddyhome.idea.vim.option.Options;
+import com.maddyhome.idea.vim.option.TextOption;
+import com.maddyhome.idea.vim.option.ToggleOption;
+import com.maddyhome.idea.vim.regexp.CharPointer;
+import com.maddyhome.idea.vim.regexp.RegExp;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A compiled VimScript expression. The text of an expression is parsed once into a tree of nodes which can then be
+ * evaluated any number of times. The values are Integer for numbers, String for strings and List for lists.
+ */
+public abstract class VimScriptExpression {
+  @NotNull
+  public abstract Object evaluate(@NotNull Map<String, Object> globals) throws ExException;
+
+  /**
+   * Compiles the expression text. The compiled trees are immutable so they are cached by their text.
+   */
+  @NotNull
+  public static VimScriptExpression compile(@NotNull String text) throws ExException {
+    synchronized (ourCache) {
+      final VimScriptExpression cached = ourCache.get(text);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final VimScriptExpression expression = new Parser(text).parse();
+    synchronized (ourCache) {
+      ourCache.put(text, expression);
+    }
+    return expression;
+  }
+
+  public static int toNumber(@NotNull Object value) throws ExException {
+    if (value instanceof Integer) {
+      return (Integer)value;
+    }
+    if (value instanceof String) {
+      final String s = ((String)value).trim();
+      int i = 0;
+      final boolean negative = s.startsWith("-");
+      if (negative) {
+        i++;
+      }
+      long n = 0;
+      if (s.startsWith("0x", i) || s.startsWith("0X", i)) {
+        for (i += 2; i < s.length() && Character.digit(s.charAt(i), 16) >= 0; i++) {
+          n = (n * 16 + Character.digit(s.charAt(i), 16)) & 0xFFFFFFFFL;
+        }
+      }
+      else {
+        for (; i < s.length() && Character.isDigit(s.charAt(i)); i++) {
+          n = Math.min(n * 10 + s.charAt(i) - '0', Integer.MAX_VALUE);
+        }
+      }
+      return negative ? -(int)n : (int)n;
+    }
+    throw new ExException("E745: Using a List as a Number");
+  }
+
+  @NotNull
+  public static String toText(@NotNull Object value) throws ExException {
+    if (value instanceof String) {
+      return (String)value;
+    }
+    if (value instanceof Integer) {
+      return value.toString();
+    }
+    throw new ExException("E730: Using a List as a String");
+  }
+
+  /**
+   * @return The value the way :echo shows it
+   */
+  @NotNull
+  public static String toDisplayString(@NotNull Object value) {
+    if (value instanceof List) {
+      final StringBuilder res = new StringBuilder("[");
+      for (Object item : (List)value) {
+        if (res.length() > 1) {
+          res.append(", ");
+        }
+        if (item instanceof String) {
+          res.append('\'').append(((String)item).replace("'", "''")).append('\'');
+        }
+        else {
+          res.append(toDisplayString(item));
+        }
+      }
+      return res.append(']').toString();
+    }
+    return value.toString();
+  }
+
+  private static boolean toBoolean(@NotNull Object value) throws ExException {
+    return toNumber(value) != 0;
+  }
+
+  /**
+   * Applies the operator of a compound assignment such as += to the old value of a variable and the assigned value
+   *
+   * @param operator '+', '-' or '.'
+   */
+  @NotNull
+  public static Object applyAssignment(char operator, @NotNull Object oldValue, @NotNull Object value)
+    throws ExException {
+    final int op = operator == '+' ? ADD : operator == '-' ? SUBTRACT : CONCAT;
+    return Binary.apply(op, oldValue, value);
+  }
+
+  @NotNull
+  private static ExException invalid(@NotNull String text) {
+    return new ExException(String.format("Invalid expression: %s", text));
+  }
+
+  private static class Parser {
+    public Parser(@NotNull String text) {
+      myText = text;
+    }
+
+    @NotNull
+    public VimScriptExpression parse() throws ExException {
+      final VimScriptExpression expression = parseTernary();
+      skipWhite();
+      if (myPos < myText.length()) {
+        throw invalid(myText);
+      }
+      return expression;
+    }
+
+    @NotNull
+    private VimScriptExpression parseTernary() throws ExException {
+      final VimScriptExpression condition = parseLogical(true);
+      if (!accept("?")) {
+        return condition;
+      }
+      final VimScriptExpression whenTrue = parseTernary();
+      if (!accept(":")) {
+        throw invalid(myText);
+      }
+      final VimScriptExpression whenFalse = parseTernary();
+      return new Ternary(condition, whenTrue, whenFalse);
+    }
+
+    @NotNull
+    private VimScriptExpression parseLogical(boolean or) throws ExException {
+      VimScriptExpression left = or ? parseLogical(false) : parseComparison();
+      while (accept(or ? "||" : "&&")) {
+        final VimScriptExpression right = or ? parseLogical(false) : parseComparison();
+        left = new Logical(left, right, or);
+      }
+      return left;
+    }
+
+    @NotNull
+    private VimScriptExpression parseComparison() throws ExException {
+      final VimScriptExpression left = parseBinary(true);
+      skipWhite();
+      int op = -1;
+      for (int i = 0; i < COMPARISONS.length; i++) {
+        if (myText.startsWith(COMPARISONS[i], myPos)) {
+          op = i;
+          myPos += COMPARISONS[i].length();
+          break;
+        }
+      }
+      if (op < 0) {
+        return left;
+      }
+      Boolean ignoreCase = null;
+      if (myPos < myText.length() && (myText.charAt(myPos) == '#' || myText.charAt(myPos) == '?')) {
+        ignoreCase = myText.charAt(myPos++) == '?';
+      }
+      return new Comparison(op, ignoreCase, left, parseBinary(true));
+    }
+
+    @NotNull
+    private VimScriptExpression parseBinary(boolean additive) throws ExException {
+      VimScriptExpression left = additive ? parseBinary(false) : parseUnary();
+      while (true) {
+        skipWhite();
+        if (myPos >= myText.length()) {
+          return left;
+        }
+        final int op;
+        final char c = myText.charAt(myPos);
+        if (additive && c == '.') {
+          myPos += myText.startsWith("..", myPos) ? 2 : 1;
+          op = CONCAT;
+        }
+        else if (additive && (c == '+' || c == '-')) {
+          myPos++;
+          op = c == '+' ? ADD : SUBTRACT;
+        }
+        else if (!additive && (c == '*' || c == '/' || c == '%')) {
+          myPos++;
+          op = c == '*' ? MULTIPLY : c == '/' ? DIVIDE : MODULO;
+        }
+        else {
+          return left;
+        }
+        left = new Binary(op, left, additive ? parseBinary(false) : parseUnary());
+      }
+    }
+
+    @NotNull
+    private VimScriptExpression parseUnary() throws ExException {
+      skipWhite();
+      if (accept("!")) {
+        return new Unary(NOT, parseUnary());
+      }
+      if (accept("-")) {
+        return new Unary(NEGATE, parseUnary());
+      }
+      if (accept("+")) {
+        return new Unary(PLUS, parseUnary());
+      }
+      return parsePostfix();
+    }
+
+    @NotNull
+    private VimScriptExpression parsePostfix() throws ExException {
+      VimScriptExpression expression = parsePrimary();
+      while (myPos < myText.length() && myText.charAt(myPos) == '[') {
+        myPos++;
+        VimScriptExpression from = null;
+        if (!accept(":")) {
+          from = parseTernary();
+          if (accept("]")) {
+            expression = new Index(expression, from);
+            continue;
+          }
+          if (!accept(":")) {
+            throw invalid(myText);
+          }
+        }
+        final VimScriptExpression to = accept("]") ? null : parseTernary();
+        if (to != null && !accept("]")) {
+          throw invalid(myText);
+        }
+        expression = new Slice(expression, from, to);
+      }
+      return expression;
+    }
+
+    @NotNull
+    private VimScriptExpression parsePrimary() throws ExException {
+      skipWhite();
+      if (myPos >= myText.length()) {
+        throw invalid(myText);
+      }
+      final char c = myText.charAt(myPos);
+      if (Character.isDigit(c)) {
+        return new Constant(parseNumber());
+      }
+      if (c == '"') {
+        return new Constant(parseDoubleQuoted());
+      }
+      if (c == '\'') {
+        return new Constant(parseSingleQuoted());
+      }
+      if (c == '[') {
+        myPos++;
+        final List<VimScriptExpression> items = new ArrayList<VimScriptExpression>();
+        while (!accept("]")) {
+          items.add(parseTernary());
+          // A trailing comma is allowed before the closing bracket
+          if (!accept(",") && !lookingAt("]")) {
+            throw invalid(myText);
+          }
+        }
+        return new ListExpression(items);
+      }
+      if (c == '(') {
+        myPos++;
+        final VimScriptExpression expression = parseTernary();
+        if (!accept(")")) {
+          throw invalid(myText);
+        }
+        return expression;
+      }
+      if (c == '&') {
+        myPos++;
+        final int start = myPos;
+        while (myPos < myText.length() && Character.isLetter(myText.charAt(myPos))) {
+          myPos++;
+        }
+        if (start == myPos) {
+          throw invalid(myText);
+        }
+        return new OptionReference(myText.substring(start, myPos));
+      }
+      if (Character.isLetter(c) || c == '_') {
+        final int start = myPos;
+        while (myPos < myText.length() && isNameChar(myText.charAt(myPos))) {
+          myPos++;
+        }
+        final String name = myText.substring(start, myPos);
+        if (myPos < myText.length() && myText.charAt(myPos) == '(') {
+          myPos++;
+          final List<VimScriptExpression> args = new ArrayList<VimScriptExpression>();
+          if (!accept(")")) {
+            do {
+              args.add(parseTernary());
+            }
+            while (accept(","));
+            if (!accept(")")) {
+              throw invalid(myText);
+            }
+          }
+          return new Call(name, args.toArray(new VimScriptExpression[args.size()]));
+        }
+        return new Variable(getVariableName(name));
+      }
+      throw invalid(myText);
+    }
+
+    @NotNull
+    private Integer parseNumber() {
+      final int start = myPos;
+      int radix = 10;
+      if (myText.startsWith("0x", myPos) || myText.startsWith("0X", myPos)) {
+        radix = 16;
+        myPos += 2;
+      }
+      else if (myText.charAt(myPos) == '0') {
+        radix = 8;
+        while (myPos < myText.length() && Character.isDigit(myText.charAt(myPos))) {
+          // A leading zero followed by 8 or 9 is a decimal number after all
+          if (Character.digit(myText.charAt(myPos++), 8) < 0) {
+            radix = 10;
+          }
+        }
+        myPos = start;
+      }
+      long n = 0;
+      int digit;
+      while (myPos < myText.length() && (digit = Character.digit(myText.charAt(myPos), radix)) >= 0) {
+        n = Math.min(n * radix + digit, Integer.MAX_VALUE);
+        myPos++;
+      }
+      return (int)n;
+    }
+
+    @NotNull
+    private String parseDoubleQuoted() throws ExException {
+      final StringBuilder res = new StringBuilder();
+      for (myPos++; myPos < myText.length(); myPos++) {
+        char c = myText.charAt(myPos);
+        if (c == '"') {
+          myPos++;
+          return res.toString();
+        }
+        if (c == '\\' && myPos + 1 < myText.length()) {
+          c = myText.charAt(++myPos);
+          switch (c) {
+            case 'n':
+              c = '\n';
+              break;
+            case 'r':
+              c = '\r';
+              break;
+            case 't':
+              c = '\t';
+              break;
+            case 'e':
+              c = '\u001B';
+              break;
+            case 'b':
+              c = '\b';
+              break;
+          }
+        }
+        res.append(c);
+      }
+      throw new ExException(String.format("E114: Missing quote: %s", myText));
+    }
+
+    @NotNull
+    private String parseSingleQuoted() throws ExException {
+      final StringBuilder res = new StringBuilder();
+      for (myPos++; myPos < myText.length(); myPos++) {
+        final char c = myText.charAt(myPos);
+        if (c == '\'') {
+          if (myPos + 1 < myText.length() && myText.charAt(myPos + 1) == '\'') {
+            myPos++;
+          }
+          else {
+            myPos++;
+            return res.toString();
+          }
+        }
+        res.append(c);
+      }
+      throw new ExException(String.format("E115: Missing quote: %s", myText));
+    }
+
+    private boolean accept(@NotNull String token) {
+      skipWhite();
+      if (myText.startsWith(token, myPos)) {
+        myPos += token.length();
+        return true;
+      }
+      return false;
+    }
+
+    private boolean lookingAt(@NotNull String token) {
+      skipWhite();
+      return myText.startsWith(token, myPos);
+    }
+
+    private void skipWhite() {
+      while (myPos < myText.length() && (myText.charAt(myPos) == ' ' || myText.charAt(myPos) == '\t')) {
+        myPos++;
+      }
+    }
+
+    private static boolean isNameChar(char c) {
+      return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '#';
+    }
+
+    @NotNull private final String myText;
+    private int myPos = 0;
+  }
+
+  /**
+   * @return The name of a global variable without the optional "g:" scope
+   */
+  @NotNull
+  public static String getVariableName(@NotNull String name) {
+    return name.startsWith("g:") ? name.substring(2) : name;
+  }
+
+  private static class Constant extends VimScriptExpression {
+    public Constant(@NotNull Object value) {
+      myValue = value;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) {
+      return myValue;
+    }
+
+    @NotNull private final Object myValue;
+  }
+
+  private static class Variable extends VimScriptExpression {
+    public Variable(@NotNull String name) {
+      myName = name;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final Object value = globals.get(myName);
+      if (value == null) {
+        throw new ExException(String.format("Undefined variable: %s", myName));
+      }
+      return value;
+    }
+
+    @NotNull private final String myName;
+  }
+
+  private static class OptionReference extends VimScriptExpression {
+    public OptionReference(@NotNull String name) {
+      myName = name;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final Option option = Options.getInstance().getOption(myName);
+      if (option instanceof ToggleOption) {
+        return ((ToggleOption)option).getValue() ? 1 : 0;
+      }
+      if (option instanceof NumberOption) {
+        return ((NumberOption)option).value();
+      }
+      if (option instanceof TextOption) {
+        return ((TextOption)option).getValue();
+      }
+      throw new ExException(String.format("E113: Unknown option: %s", myName));
+    }
+
+    @NotNull private final String myName;
+  }
+
+  private static class ListExpression extends VimScriptExpression {
+    public ListExpression(@NotNull List<VimScriptExpression> items) {
+      myItems = items.toArray(new VimScriptExpression[items.size()]);
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final List<Object> res = new ArrayList<Object>(myItems.length);
+      for (VimScriptExpression item : myItems) {
+        res.add(item.evaluate(globals));
+      }
+      return res;
+    }
+
+    @NotNull private final VimScriptExpression[] myItems;
+  }
+
+  private static class Ternary extends VimScriptExpression {
+    public Ternary(@NotNull VimScriptExpression condition, @NotNull VimScriptExpression whenTrue,
+                   @NotNull VimScriptExpression whenFalse) {
+      myCondition = condition;
+      myWhenTrue = whenTrue;
+      myWhenFalse = whenFalse;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      return toBoolean(myCondition.evaluate(globals)) ? myWhenTrue.evaluate(globals) : myWhenFalse.evaluate(globals);
+    }
+
+    @NotNull private final VimScriptExpression myCondition;
+    @NotNull private final VimScriptExpression myWhenTrue;
+    @NotNull private final VimScriptExpression myWhenFalse;
+  }
+
+  private static class Logical extends VimScriptExpression {
+    public Logical(@NotNull VimScriptExpression left, @NotNull VimScriptExpression right, boolean or) {
+      myLeft = left;
+      myRight = right;
+      myOr = or;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      // The right operand is only evaluated when it decides the result
+      if (toBoolean(myLeft.evaluate(globals)) == myOr) {
+        return myOr ? 1 : 0;
+      }
+      return toBoolean(myRight.evaluate(globals)) ? 1 : 0;
+    }
+
+    @NotNull private final VimScriptExpression myLeft;
+    @NotNull private final VimScriptExpression myRight;
+    private final boolean myOr;
+  }
+
+  private static class Unary extends VimScriptExpression {
+    public Unary(int op, @NotNull VimScriptExpression operand) {
+      myOp = op;
+      myOperand = operand;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final int value = toNumber(myOperand.evaluate(globals));
+      switch (myOp) {
+        case NOT:
+          return value == 0 ? 1 : 0;
+        case NEGATE:
+          return -value;
+        default:
+          return value;
+      }
+    }
+
+    private final int myOp;
+    @NotNull private final VimScriptExpression myOperand;
+  }
+
+  private static class Binary extends VimScriptExpression {
+    public Binary(int op, @NotNull VimScriptExpression left, @NotNull VimScriptExpression right) {
+      myOp = op;
+      myLeft = left;
+      myRight = right;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      return apply(myOp, myLeft.evaluate(globals), myRight.evaluate(globals));
+    }
+
+    @NotNull
+    public static Object apply(int op, @NotNull Object left, @NotNull Object right) throws ExException {
+      if (op == CONCAT) {
+        return toText(left) + toText(right);
+      }
+      if (op == ADD && left instanceof List && right instanceof List) {
+        final List<Object> res = new ArrayList<Object>((List<?>)left);
+        res.addAll((List<?>)right);
+        return res;
+      }
+      final int a = toNumber(left);
+      final int b = toNumber(right);
+      switch (op) {
+        case ADD:
+          return a + b;
+        case SUBTRACT:
+          return a - b;
+        case MULTIPLY:
+          return a * b;
+        case DIVIDE:
+          // Vim doesn't fail on a division by zero
+          if (b == 0) {
+            return a == 0 ? Integer.MIN_VALUE : a > 0 ? Integer.MAX_VALUE : -Integer.MAX_VALUE;
+          }
+          return a / b;
+        default:
+          return b == 0 ? 0 : a % b;
+      }
+    }
+
+    private final int myOp;
+    @NotNull private final VimScriptExpression myLeft;
+    @NotNull private final VimScriptExpression myRight;
+  }
+
+  private static class Comparison extends VimScriptExpression {
+    public Comparison(int op, @Nullable Boolean ignoreCase, @NotNull VimScriptExpression left,
+                      @NotNull VimScriptExpression right) {
+      myOp = op;
+      myIgnoreCase = ignoreCase;
+      myLeft = left;
+      myRight = right;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final Object left = myLeft.evaluate(globals);
+      final Object right = myRight.evaluate(globals);
+      final boolean ignoreCase = myIgnoreCase != null ? myIgnoreCase : Options.IGNORECASE.get();
+      final boolean res;
+      if (myOp == MATCH || myOp == NO_MATCH) {
+        res = matches(toText(left), toText(right), ignoreCase) == (myOp == MATCH);
+      }
+      else if (left instanceof List || right instanceof List) {
+        if (myOp != EQUAL && myOp != NOT_EQUAL) {
+          throw new ExException("E692: Invalid operation for List");
+        }
+        res = left.equals(right) == (myOp == EQUAL);
+      }
+      else {
+        final int cmp;
+        if (left instanceof Integer || right instanceof Integer) {
+          final int a = toNumber(left);
+          final int b = toNumber(right);
+          cmp = a < b ? -1 : a > b ? 1 : 0;
+        }
+        else {
+          cmp = ignoreCase ? ((String)left).compareToIgnoreCase((String)right) : ((String)left).compareTo((String)right);
+        }
+        switch (myOp) {
+          case EQUAL:
+            res = cmp == 0;
+            break;
+          case NOT_EQUAL:
+            res = cmp != 0;
+            break;
+          case GREATER_OR_EQUAL:
+            res = cmp >= 0;
+            break;
+          case LESS_OR_EQUAL:
+            res = cmp <= 0;
+            break;
+          case GREATER:
+            res = cmp > 0;
+            break;
+          default:
+            res = cmp < 0;
+        }
+      }
+      return res ? 1 : 0;
+    }
+
+    /**
+     * Matches the text against a Vim pattern. The pattern is usually a constant so the last compiled one is kept.
+     */
+    private boolean matches(@NotNull String text, @NotNull String pattern, boolean ignoreCase) throws ExException {
+      CompiledPattern compiled = myPattern;
+      if (compiled == null || !compiled.myText.equals(pattern)) {
+        final RegExp regExp = new RegExp();
+        final RegExp.regprog_T program = regExp.vim_regcomp(pattern, 1);
+        if (program == null) {
+          throw new ExException(String.format("Invalid pattern: %s", pattern));
+        }
+        compiled = new CompiledPattern(pattern, regExp, program);
+        myPattern = compiled;
+      }
+
+      final RegExp.regmatch_T match = new RegExp.regmatch_T();
+      match.regprog = compiled.myProgram;
+      match.rm_ic = ignoreCase;
+      return compiled.myRegExp.vim_regexec(match, new CharPointer(text), 0);
+    }
+
+    private static class CompiledPattern {
+      public CompiledPattern(@NotNull String text, @NotNull RegExp regExp, @NotNull RegExp.regprog_T program) {
+        myText = text;
+        myRegExp = regExp;
+        myProgram = program;
+      }
+
+      @NotNull private final String myText;
+      @NotNull private final RegExp myRegExp;
+      @NotNull private final RegExp.regprog_T myProgram;
+    }
+
+    private final int myOp;
+    @Nullable private final Boolean myIgnoreCase;
+    @NotNull private final VimScriptExpression myLeft;
+    @NotNull private final VimScriptExpression myRight;
+    @Nullable private volatile CompiledPattern myPattern = null;
+  }
+
+  private static class Index extends VimScriptExpression {
+    public Index(@NotNull VimScriptExpression base, @NotNull VimScriptExpression index) {
+      myBase = base;
+      myIndex = index;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final Object base = myBase.evaluate(globals);
+      int index = toNumber(myIndex.evaluate(globals));
+      if (base instanceof List) {
+        final List list = (List)base;
+        if (index < 0) {
+          index += list.size();
+        }
+        if (index < 0 || index >= list.size()) {
+          throw new ExException(String.format("E684: list index out of range: %d", index));
+        }
+        return list.get(index);
+      }
+      final String text = toText(base);
+      return index >= 0 && index < text.length() ? String.valueOf(text.charAt(index)) : "";
+    }
+
+    @NotNull private final VimScriptExpression myBase;
+    @NotNull private final VimScriptExpression myIndex;
+  }
+
+  private static class Slice extends VimScriptExpression {
+    public Slice(@NotNull VimScriptExpression base, @Nullable VimScriptExpression from,
+                 @Nullable VimScriptExpression to) {
+      myBase = base;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final Object base = myBase.evaluate(globals);
+      final int size = base instanceof List ? ((List)base).size() : toText(base).length();
+      int from = myFrom != null ? toNumber(myFrom.evaluate(globals)) : 0;
+      int to = myTo != null ? toNumber(myTo.evaluate(globals)) : size - 1;
+      if (from < 0) {
+        from = Math.max(from + size, 0);
+      }
+      if (to < 0) {
+        to += size;
+      }
+      // Both ends are included
+      to = Math.min(to + 1, size);
+      if (base instanceof List) {
+        return from < to ? new ArrayList<Object>(((List<?>)base).subList(from, to)) : new ArrayList<Object>();
+      }
+      return from < to ? toText(base).substring(from, to) : "";
+    }
+
+    @NotNull private final VimScriptExpression myBase;
+    @Nullable private final VimScriptExpression myFrom;
+    @Nullable private final VimScriptExpression myTo;
+  }
+
+  private static class Call extends VimScriptExpression {
+    public Call(@NotNull String name, @NotNull VimScriptExpression[] args) throws ExException {
+      final Integer function = FUNCTIONS.get(name);
+      if (function == null) {
+        throw new ExException(String.format("E117: Unknown function: %s", name));
+      }
+      final int minArgs = function >> 8 & 0xF;
+      final int maxArgs = function >> 12 & 0xF;
+      if (args.length < minArgs) {
+        throw new ExException(String.format("E119: Not enough arguments for function: %s", name));
+      }
+      if (args.length > maxArgs) {
+        throw new ExException(String.format("E118: Too many arguments for function: %s", name));
+      }
+      myFunction = function & 0xFF;
+      myArgs = args;
+    }
+
+    @NotNull
+    @Override
+    public Object evaluate(@NotNull Map<String, Object> globals) throws ExException {
+      final Object[] args = new Object[myArgs.length];
+      for (int i = 0; i < args.length; i++) {
+        args[i] = myArgs[i].evaluate(globals);
+      }
+      switch (myFunction) {
+        case F_LEN:
+          return args[0] instanceof List ? ((List)args[0]).size() : toText(args[0]).length();
+        case F_STRLEN:
+          return toText(args[0]).length();
+        case F_TOUPPER:
+          return toText(args[0]).toUpperCase();
+        case F_TOLOWER:
+          return toText(args[0]).toLowerCase();
+        case F_REPEAT:
+          final String text = toText(args[0]);
+          final StringBuilder res = new StringBuilder();
+          for (int i = toNumber(args[1]); i > 0; i--) {
+            res.append(text);
+          }
+          return res.toString();
+        case F_JOIN:
+          if (!(args[0] instanceof List)) {
+            throw new ExException("E714: List required");
+          }
+          final String separator = args.length > 1 ? toText(args[1]) : " ";
+          final List items = (List)args[0];
+          final StringBuilder joined = new StringBuilder();
+          for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+              joined.append(separator);
+            }
+            final Object item = items.get(i);
+            joined.append(item instanceof String ? (String)item : toDisplayString(item));
+          }
+          return joined.toString();
+        case F_STRING:
+          return args[0] instanceof String ? "'" + ((String)args[0]).replace("'", "''") + "'"
+                                           : toDisplayString(args[0]);
+        case F_STR2NR:
+          return toNumber(toText(args[0]));
+        default:
+          final String name = toText(args[0]);
+          if (name.startsWith("&")) {
+            return Options.getInstance().getOption(name.substring(1)) != null ? 1 : 0;
+          }
+          return globals.containsKey(getVariableName(name)) ? 1 : 0;
+      }
+    }
+
+    private final int myFunction;
+    @NotNull private final VimScriptExpression[] myArgs;
+  }
+
+  private static final String[] COMPARISONS = {"==", "!=", ">=", "<=", "=~", "!~", ">", "<"};
+  private static final int EQUAL = 0;
+  private static final int NOT_EQUAL = 1;
+  private static final int GREATER_OR_EQUAL = 2;
+  private static final int LESS_OR_EQUAL = 3;
+  private static final int MATCH = 4;
+  private static final int NO_MATCH = 5;
+  private static final int GREATER = 6;
+
+  private static final int ADD = 0;
+  private static final int SUBTRACT = 1;
+  private static final int CONCAT = 2;
+  private static final int MULTIPLY = 3;
+  private static final int DIVIDE = 4;
+  private static final int MODULO = 5;
+
+  private static final int NOT = 0;
+  private static final int NEGATE = 1;
+  private static final int PLUS = 2;
+
+  private static final int F_LEN = 0;
+  private static final int F_STRLEN = 1;
+  private static final int F_TOUPPER = 2;
+  private static final int F_TOLOWER = 3;
+  private static final int F_REPEAT = 4;
+  private static final int F_JOIN = 5;
+  private static final int F_STRING = 6;
+  private static final int F_STR2NR = 7;
+  private static final int F_EXISTS = 8;
+
+  /**
+   * The supported functions with their minimum number of arguments in bits 8-11 and the maximum in bits 12-15
+   */
+  private static final Map<String, Integer> FUNCTIONS = new HashMap<String, Integer>();
+
+  static {
+    FUNCTIONS.put("len", F_LEN | 1 << 8 | 1 << 12);
+    FUNCTIONS.put("strlen", F_STRLEN | 1 << 8 | 1 << 12);
+    FUNCTIONS.put("toupper", F_TOUPPER | 1 << 8 | 1 << 12);
+    FUNCTIONS.put("tolower", F_TOLOWER | 1 << 8 | 1 << 12);
+    FUNCTIONS.put("repeat", F_REPEAT | 2 << 8 | 2 << 12);
+    FUNCTIONS.put("join", F_JOIN | 1 << 8 | 2 << 12);
+    FUNCTIONS.put("string", F_STRING | 1 << 8 | 1 << 12);
+    FUNCTIONS.put("str2nr", F_STR2NR | 1 << 8 | 1 << 12);
+    FUNCTIONS.put("exists", F_EXISTS | 1 << 8 | 1 << 12);
+  }
+
+  private static final int CACHE_SIZE = 100;
+
+  private static final Map<String, VimScriptExpression> ourCache =
+    new LinkedHashMap<String, VimScriptExpression>(CACHE_SIZE, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, VimScriptExpression> eldest) {
+        return size() > CACHE_SIZE;
+      }
+    };
+}
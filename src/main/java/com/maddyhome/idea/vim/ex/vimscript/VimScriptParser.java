@@ -25,12 +25,8 @@ import com.maddyhome.idea.vim.ex.ExException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -40,9 +36,6 @@ public class VimScriptParser {
   public static final String[] VIMRC_FILES = {".ideavimrc", "_ideavimrc"};
   public static final int BUFSIZE = 4096;
   private static final Pattern EOL_SPLIT_PATTERN = Pattern.compile(" *(\r\n|\n)+ *");
-  private static final Pattern DOUBLE_QUOTED_STRING = Pattern.compile("\"([^\"]*)\"");
-  private static final Pattern SINGLE_QUOTED_STRING = Pattern.compile("'([^']*)'");
-  private static final Pattern REFERENCE_EXPR = Pattern.compile("([A-Za-z_][A-Za-z_0-9]*)");
 
   private VimScriptParser() {
   }
@@ -61,15 +54,39 @@ public class VimScriptParser {
     return null;
   }
 
+  /**
+   * Executes the rc file using the effects cached from its previous execution if its content hasn't changed.
+   */
+  public static void executeIdeaVimRc(@NotNull File file) {
+    final byte[] data;
+    try {
+      data = readBytes(file);
+    }
+    catch (IOException ignored) {
+      return;
+    }
+    if (VimScriptCache.replay(file, data)) {
+      return;
+    }
+    VimScriptCache.startRecording(file, data);
+    try {
+      executeText(new String(data));
+    }
+    finally {
+      VimScriptCache.stopRecording();
+    }
+  }
+
   public static void executeFile(@NotNull File file) {
-    final String data;
+    final byte[] data;
     try {
-      data = readFile(file);
+      data = readBytes(file);
     }
     catch (IOException ignored) {
       return;
     }
-    executeText(data);
+    VimScriptCache.recordSource(file, data);
+    executeText(new String(data));
   }
 
   public static void executeText(@NotNull String text) {
@@ -97,49 +114,28 @@ public class VimScriptParser {
 
   @NotNull
   public static Object evaluate(@NotNull String expression, @NotNull Map<String, Object> globals) throws ExException {
-    // This evaluator is very basic, no proper parsing whatsoever. It is here as the very first step necessary to
-    // support mapleader, VIM-650. See also VIM-669.
-    Matcher m;
-    m = DOUBLE_QUOTED_STRING.matcher(expression);
-    if (m.matches()) {
-      return m.group(1);
-    }
-    m = SINGLE_QUOTED_STRING.matcher(expression);
-    if (m.matches()) {
-      return m.group(1);
-    }
-    m = REFERENCE_EXPR.matcher(expression);
-    if (m.matches()) {
-      final String name = m.group(1);
-      final Object value = globals.get(name);
-      if (value != null) {
-        return value;
-      }
-      else {
-        throw new ExException(String.format("Undefined variable: %s", name));
-      }
-    }
-    throw new ExException(String.format("Invalid expression: %s", expression));
+    return VimScriptExpression.compile(expression).evaluate(globals);
   }
 
   @NotNull
   public static String expressionToString(@NotNull Object value) throws ExException {
-    // TODO: Return meaningful value representations
-    if (value instanceof String) {
-      return (String)value;
-    }
-    throw new ExException(String.format("Cannot convert '%s' to string", value));
+    return VimScriptExpression.toDisplayString(value);
   }
 
   @NotNull
-  private static String readFile(@NotNull File file) throws IOException {
-    final BufferedReader reader = new BufferedReader(new FileReader(file));
-    final StringBuilder builder = new StringBuilder();
-    final char[] buffer = new char[BUFSIZE];
-    int n;
-    while ((n = reader.read(buffer)) > 0) {
-      builder.append(buffer, 0, n);
+  static byte[] readBytes(@NotNull File file) throws IOException {
+    final InputStream in = new FileInputStream(file);
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream((int)file.length());
+      final byte[] buffer = new byte[BUFSIZE];
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    }
+    finally {
+      in.close();
     }
-    return builder.toString();
   }
 }
@@ -17,13 +17,12 @@
  */
 package com.maddyhome.idea.vim.group;
 
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.maddyhome.idea.vim.EventFacade;
 import com.maddyhome.idea.vim.KeyHandler;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.*;
+import com.maddyhome.idea.vim.common.Mark;
 import com.maddyhome.idea.vim.common.Register;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.LineRange;
@@ -31,6 +30,7 @@ import com.maddyhome.idea.vim.helper.*;
 import com.maddyhome.idea.vim.option.BoundListOption;
 import com.maddyhome.idea.vim.option.Options;
 import consulo.application.ApplicationManager;
+import consulo.application.progress.ProgressIndicator;
 import consulo.codeEditor.*;
 import consulo.codeEditor.event.EditorFactoryAdapter;
 import consulo.codeEditor.event.EditorFactoryEvent;
@@ -51,7 +51,6 @@ import consulo.ui.ex.action.ActionManager;
 import consulo.ui.ex.action.AnAction;
 import consulo.undoRedo.CommandProcessor;
 import consulo.undoRedo.UndoConfirmationPolicy;
-import consulo.util.lang.StringUtil;
 import consulo.virtualFileSystem.VirtualFile;
 import consulo.virtualFileSystem.fileType.FileType;
 import org.jetbrains.annotations.NotNull;
@@ -60,8 +59,6 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -71,6 +68,10 @@ import java.util.List;
 public class ChangeGroup {
 
   public static final int MAX_REPEAT_CHARS_COUNT = 10000;
+  /**
+   * The maximum length of the text inserted with a single document change when repeating an insert
+   */
+  private static final int MAX_REPEAT_INSERT_LENGTH = 1 << 20;
 
   /**
    * Creates the group
@@ -401,7 +402,7 @@ public class ChangeGroup {
       // <Enter> is added to strokes as an action during processing in order to indent code properly in the repeat
       // command
       if (newFragment.startsWith("\n") && newFragment.trim().isEmpty()) {
-        strokes.addAll(getAdjustCaretActions(e));
+        addCaretMove(e);
         oldOffset = -1;
         return;
       }
@@ -411,37 +412,91 @@ public class ChangeGroup {
         return;
       }
 
-      strokes.addAll(getAdjustCaretActions(e));
+      addCaretMove(e);
 
       if (oldFragmentLength > 0) {
-        final AnAction editorDelete = ActionManager.getInstance().getAction("EditorDelete");
-        for (int i = 0; i < oldFragmentLength; i++) {
-          strokes.add(editorDelete);
-        }
+        strokes.add(new TextDeletion(oldFragmentLength));
       }
 
       if (newFragmentLength > 0) {
-        strokes.add(newFragment.toCharArray());
+        strokes.add(newFragment);
       }
       repeatCharsCount += newFragmentLength;
       oldOffset = e.getOffset() + newFragmentLength;
     }
 
-    @NotNull
-    private List<AnAction> getAdjustCaretActions(DocumentEvent e) {
+    private void addCaretMove(@NotNull DocumentEvent e) {
       final int delta = e.getOffset() - oldOffset;
       if (oldOffset >= 0 && delta != 0) {
-        final List<AnAction> positionCaretActions = new ArrayList<AnAction>();
-        final String motionName = delta < 0 ? "VimMotionLeft" : "VimMotionRight";
-        final AnAction action = ActionManager.getInstance().getAction(motionName);
-        final int count = Math.abs(delta);
-        for (int i = 0; i < count; i++) {
-          positionCaretActions.add(action);
+        strokes.add(new CaretMove(delta));
+      }
+    }
+  }
+
+  /**
+   * Moves the caret by a number of characters when the last insert is repeated
+   */
+  private static class CaretMove {
+    public CaretMove(int delta) {
+      this.delta = delta;
+    }
+
+    private final int delta;
+  }
+
+  /**
+   * Deletes a number of characters after the caret when the last insert is repeated
+   */
+  private static class TextDeletion {
+    public TextDeletion(int count) {
+      this.count = count;
+    }
+
+    private final int count;
+  }
+
+  /**
+   * Compacts the strokes recorded during an insert into an edit script. Adjacent pieces of text, caret moves and
+   * deletions are merged so that each of them is replayed with a single document change or caret move.
+   *
+   * @param strokes The recorded strokes: actions, inserted text, caret moves and deletions
+   * @return The compacted strokes
+   */
+  @NotNull
+  private static List<Object> compactStrokes(@NotNull List<Object> strokes) {
+    final List<Object> res = new ArrayList<Object>(strokes.size());
+    StringBuilder text = null;
+    for (Object stroke : strokes) {
+      if (stroke instanceof String) {
+        if (text == null) {
+          text = new StringBuilder();
         }
-        return positionCaretActions;
+        text.append((String)stroke);
+        continue;
+      }
+      if (text != null) {
+        res.add(text.toString());
+        text = null;
+      }
+      final Object last = res.isEmpty() ? null : res.get(res.size() - 1);
+      if (stroke instanceof CaretMove && last instanceof CaretMove) {
+        final int delta = ((CaretMove)last).delta + ((CaretMove)stroke).delta;
+        res.remove(res.size() - 1);
+        if (delta != 0) {
+          res.add(new CaretMove(delta));
+        }
+      }
+      else if (stroke instanceof TextDeletion && last instanceof TextDeletion) {
+        res.set(res.size() - 1, new TextDeletion(((TextDeletion)last).count + ((TextDeletion)stroke).count));
+      }
+      else {
+        res.add(stroke);
       }
-      return Collections.emptyList();
     }
+    if (text != null) {
+      res.add(text.toString());
+    }
+    return res;
   }
 
   /**
@@ -496,19 +551,45 @@ public class ChangeGroup {
    * @param count   The number of times to repeat the previous insert
    */
   private void repeatInsertText(@NotNull Editor editor, @NotNull DataContext context, int count) {
-    if (lastStrokes == null) {
+    if (lastStrokes == null || count <= 0) {
+      return;
+    }
+    // Plain typed text is inserted for all the repeats at once
+    if (lastStrokes.size() == 1 && lastStrokes.get(0) instanceof String) {
+      final String text = (String)lastStrokes.get(0);
+      final int perInsert = Math.max(1, Math.min(count, MAX_REPEAT_INSERT_LENGTH / Math.max(1, text.length())));
+      final StringBuilder chunk = new StringBuilder(text.length() * perInsert);
+      for (int i = 0; i < perInsert; i++) {
+        chunk.append(text);
+      }
+      for (int done = 0; done < count; done += perInsert) {
+        final int n = Math.min(perInsert, count - done);
+        final String str = n == perInsert ? chunk.toString() : chunk.substring(0, text.length() * n);
+        insertText(editor, editor.getCaretModel().getOffset(), str);
+      }
       return;
     }
+    final Document doc = editor.getDocument();
     for (int i = 0; i < count; i++) {
       // Treat other keys special by performing the appropriate action they represent in insert/replace mode
       for (Object lastStroke : lastStrokes) {
+        final int offset = editor.getCaretModel().getOffset();
         if (lastStroke instanceof AnAction) {
           KeyHandler.executeAction((AnAction)lastStroke, context);
           strokes.add(lastStroke);
         }
-        else if (lastStroke instanceof char[]) {
-          final char[] chars = (char[])lastStroke;
-          insertText(editor, editor.getCaretModel().getOffset(), new String(chars));
+        else if (lastStroke instanceof String) {
+          insertText(editor, offset, (String)lastStroke);
+        }
+        else if (lastStroke instanceof CaretMove) {
+          final int target = offset + ((CaretMove)lastStroke).delta;
+          editor.getCaretModel().moveToOffset(Math.max(0, Math.min(target, doc.getTextLength())));
+        }
+        else if (lastStroke instanceof TextDeletion) {
+          final int end = Math.min(offset + ((TextDeletion)lastStroke).count, doc.getTextLength());
+          if (end > offset) {
+            doc.deleteString(offset, end);
+          }
         }
       }
     }
@@ -538,7 +619,7 @@ public class ChangeGroup {
     }
 
     // Save off current list of keystrokes
-    lastStrokes = new ArrayList<Object>(strokes);
+    lastStrokes = compactStrokes(strokes);
 
     // If the insert/replace command was preceded by a count, repeat again N - 1 times
     repeatInsert(editor, context, cnt == 0 ? 0 : cnt - 1, true);
@@ -784,7 +865,8 @@ public class ChangeGroup {
   }
 
   /**
-   * This does the actual joining of the lines
+   * This does the actual joining of the lines. All the line breaks are replaced in one change and the marks on the
+   * joined lines, which that change deletes, are then moved to where their text ended up.
    *
    * @param editor    The editor to join the lines in
    * @param startLine The starting logical line
@@ -794,28 +876,63 @@ public class ChangeGroup {
    * @return true if able to join the lines, false if not
    */
   private boolean deleteJoinNLines(@NotNull Editor editor, int startLine, int count, boolean spaces) {
-    // start my moving the cursor to the very end of the first line
-    MotionGroup.moveCaret(editor, VimPlugin.getMotion().moveCaretToLineEnd(editor, startLine, true));
-    for (int i = 1; i < count; i++) {
-      int start = VimPlugin.getMotion().moveCaretToLineEnd(editor);
-      int trailingWhitespaceStart = VimPlugin.getMotion().moveCaretToLineEndSkipLeading(editor);
-      boolean hasTrailingWhitespace = start != trailingWhitespaceStart + 1;
-
-      MotionGroup.moveCaret(editor, start);
-      int offset;
-      if (spaces) {
-        offset = VimPlugin.getMotion().moveCaretToLineStartSkipLeadingOffset(editor, 1);
+    final CharSequence chars = editor.getDocument().getCharsSequence();
+    final int endLine = startLine + count - 1;
+    final int lineStart = EditorHelper.getLineStartOffset(editor, startLine);
+    final int start = EditorHelper.getLineEndOffset(editor, startLine, true);
+
+    // The separators depend on the text joined before them, so they are all worked out before the document changes
+    final int[] breakStarts = new int[count - 1];
+    final int[] breakEnds = new int[count - 1];
+    final boolean[] insertSpace = new boolean[count - 1];
+    boolean hasTrailingWhitespace = start == lineStart || Character.isWhitespace(chars.charAt(start - 1));
+    for (int line = startLine + 1; line <= endLine; line++) {
+      final int i = line - startLine - 1;
+      breakStarts[i] = EditorHelper.getLineEndOffset(editor, line - 1, true);
+      breakEnds[i] = spaces ? EditorHelper.getLeadingCharacterOffset(editor, line)
+                            : EditorHelper.getLineStartOffset(editor, line);
+      if (spaces && !hasTrailingWhitespace) {
+        insertSpace[i] = true;
+        hasTrailingWhitespace = true;
       }
-      else {
-        offset = VimPlugin.getMotion().moveCaretToLineStartOffset(editor);
+      final int textEnd = EditorHelper.getLineEndOffset(editor, line, true);
+      if (textEnd > breakEnds[i]) {
+        hasTrailingWhitespace = Character.isWhitespace(chars.charAt(textEnd - 1));
       }
-      deleteText(editor, new TextRange(editor.getCaretModel().getOffset(), offset), null);
-      if (spaces && !hasTrailingWhitespace) {
-        insertText(editor, start, " ");
-        MotionGroup.moveCaret(editor, VimPlugin.getMotion().moveCaretHorizontal(editor, -1, false));
+    }
+
+    // The text of every joined line starts at its break end and is moved to its start in the joined text
+    final StringBuilder joined = new StringBuilder();
+    final int[] textStarts = new int[count - 1];
+    for (int i = 0; i < breakStarts.length; i++) {
+      if (insertSpace[i]) {
+        joined.append(' ');
       }
+      textStarts[i] = start + joined.length();
+      if (i + 1 < breakStarts.length) {
+        joined.append(chars, breakEnds[i], breakStarts[i + 1]);
+      }
+    }
+    final List<Mark> marks = VimPlugin.getMark().getLineMarks(editor, startLine + 1, endLine);
+    final int[] markOffsets = new int[marks.size()];
+    for (int i = 0; i < markOffsets.length; i++) {
+      final Mark mark = marks.get(i);
+      markOffsets[i] = EditorHelper.getOffset(editor, mark.getLogicalLine(), mark.getCol());
     }
 
+    replaceText(editor, start, breakEnds[breakEnds.length - 1], joined.toString());
+
+    for (int i = 0; i < markOffsets.length; i++) {
+      final Mark mark = marks.get(i);
+      final int line = mark.getLogicalLine() - startLine - 1;
+      VimPlugin.getMark().setMark(editor, mark.getKey(),
+                                  textStarts[line] + Math.max(markOffsets[i] - breakEnds[line], 0));
+    }
+
+    // The caret goes to the last join, on the space inserted there
+    final int last = breakStarts.length - 1;
+    MotionGroup.moveCaret(editor, textStarts[last] - (insertSpace[last] ? 1 : 0));
+
     return true;
   }
 
@@ -920,6 +1037,64 @@ public class ChangeGroup {
     return res;
   }
 
+  /**
+   * Deletes a set of whole lines. Each run of adjacent lines is deleted with one change, from the bottom up, so the
+   * marks on the lines in between are kept. The default register receives the last deleted line, the same as
+   * deleting the lines one by one would leave it.
+   *
+   * @param editor The editor to delete the lines from
+   * @param lines  The lines to delete in ascending order
+   * @return true if able to delete the lines, false if not
+   */
+  public boolean deleteLines(@NotNull Editor editor, @NotNull int[] lines) {
+    if (lines.length == 0) {
+      return false;
+    }
+
+    final int lastLine = lines[lines.length - 1];
+    if (!VimPlugin.getRegister().storeText(editor, getLinesRange(editor, lastLine, lastLine), SelectionType.LINE_WISE,
+                                           true)) {
+      return false;
+    }
+
+    int i = lines.length - 1;
+    while (i >= 0) {
+      final int endLine = lines[i];
+      while (i > 0 && lines[i - 1] == lines[i] - 1) {
+        i--;
+      }
+      final TextRange range = getLinesRange(editor, lines[i], endLine);
+      // Deleting the last line without a line break removes the line break before it
+      final int start = range.getStartOffset() > 0 &&
+                        range.getEndOffset() == EditorHelper.getLineEndOffset(editor, endLine, true)
+                        ? range.getStartOffset() - 1 : range.getStartOffset();
+      deleteText(editor, new TextRange(start, range.getEndOffset()), null);
+      i--;
+    }
+
+    final int line = Math.min(lastLine - lines.length + 1, EditorHelper.getLineCount(editor) - 1);
+    final int newSize = EditorHelper.getFileSize(editor);
+    final int pos = line < 0 ? 0 : EditorHelper.getLineStartOffset(editor, line);
+    if (pos >= newSize) {
+      MotionGroup.moveCaret(editor, Math.max(newSize - 1, 0));
+    }
+    else {
+      MotionGroup.moveCaret(editor, EditorHelper.normalizeOffset(editor, pos, false));
+    }
+
+    return true;
+  }
+
+  /**
+   * @return The range of the lines including the line break of the last one, if it has one
+   */
+  @NotNull
+  private static TextRange getLinesRange(@NotNull Editor editor, int startLine, int endLine) {
+    return new TextRange(EditorHelper.getLineStartOffset(editor, startLine),
+                         Math.min(EditorHelper.getLineEndOffset(editor, endLine, true) + 1,
+                                  EditorHelper.getFileSize(editor, true)));
+  }
+
   /**
    * Begin Replace mode
    *
@@ -1382,47 +1557,34 @@ public class ChangeGroup {
     int sline = editor.offsetToLogicalPosition(range.getStartOffset()).line;
     int eline = editor.offsetToLogicalPosition(range.getEndOffset()).line;
 
-    if (range.isMultiple()) {
-      int col = editor.offsetToLogicalPosition(range.getStartOffset()).column;
-      int size = indentSize * count;
-      if (dir == 1) {
-        // Right shift blockwise selection
-        StringBuilder space = new StringBuilder();
-        int tabCnt = 0;
-        int spcCnt;
-        if (useTabs) {
-          tabCnt = size / tabSize;
-          spcCnt = size % tabSize;
-        }
-        else {
-          spcCnt = size;
-        }
-
-        for (int i = 0; i < tabCnt; i++) {
-          space.append('\t');
-        }
-        for (int i = 0; i < spcCnt; i++) {
-          space.append(' ');
-        }
-
-        for (int l = sline; l <= eline; l++) {
-          int len = EditorHelper.getLineLength(editor, l);
-          if (len > col) {
-            LogicalPosition spos = new LogicalPosition(l, col);
-            insertText(editor, editor.logicalPositionToOffset(spos), space.toString());
+    // The shifted text is built in one pass and replaced in one change, from the first to the last line that
+    // changes. The change deletes the marks on those lines, so they are set on the same lines again after it.
+    final CharSequence chars = editor.getDocument().getCharsSequence();
+    final int col = editor.offsetToLogicalPosition(range.getStartOffset()).column;
+    final int size = indentSize * count;
+    final String space = dir == 1 ? getIndentText(size, tabSize, useTabs) : "";
+    final StringBuilder text = new StringBuilder();
+    int firstLine = -1;
+    int lastLine = -1;
+    int lastLength = 0;
+    for (int l = sline; l <= eline; l++) {
+      final int soff = EditorHelper.getLineStartOffset(editor, l);
+      final int eoff = EditorHelper.getLineEndOffset(editor, l, true);
+      int from = -1;
+      int to = -1;
+      String replacement = "";
+      if (range.isMultiple()) {
+        if (EditorHelper.getLineLength(editor, l) > col) {
+          final int wsoff = editor.logicalPositionToOffset(new LogicalPosition(l, col));
+          if (dir == 1) {
+            // Right shift blockwise selection
+            from = wsoff;
+            to = wsoff;
+            replacement = space;
           }
-        }
-      }
-      else {
-        // Left shift blockwise selection
-        CharSequence chars = editor.getDocument().getCharsSequence();
-        for (int l = sline; l <= eline; l++) {
-          int len = EditorHelper.getLineLength(editor, l);
-          if (len > col) {
-            LogicalPosition spos = new LogicalPosition(l, col);
-            LogicalPosition epos = new LogicalPosition(l, col + size - 1);
-            int wsoff = editor.logicalPositionToOffset(spos);
-            int weoff = editor.logicalPositionToOffset(epos);
+          else {
+            // Left shift blockwise selection
+            final int weoff = Math.min(editor.logicalPositionToOffset(new LogicalPosition(l, col + size - 1)), eoff - 1);
             int pos;
             for (pos = wsoff; pos <= weoff; pos++) {
               if (CharacterHelper.charType(chars.charAt(pos), false) != CharacterHelper.CharacterType.WHITESPACE) {
@@ -1430,42 +1592,52 @@ public class ChangeGroup {
               }
             }
             if (pos > wsoff) {
-              deleteText(editor, new TextRange(wsoff, pos), null);
+              from = wsoff;
+              to = pos;
             }
           }
         }
       }
-    }
-    else {
-      // Shift non-blockwise selection
-      for (int l = sline; l <= eline; l++) {
-        int soff = EditorHelper.getLineStartOffset(editor, l);
-        int eoff = EditorHelper.getLineEndOffset(editor, l, true);
+      else {
+        // Shift non-blockwise selection
         int woff = VimPlugin.getMotion().moveCaretToLineStartSkipLeading(editor, l);
-        int col = editor.offsetToVisualPosition(woff).column;
-        int newCol = Math.max(0, col + dir * indentSize * count);
-        if (col > 0 || soff != eoff) {
-          StringBuilder space = new StringBuilder();
-          int tabCnt = 0;
-          int spcCnt;
-          if (useTabs) {
-            tabCnt = newCol / tabSize;
-            spcCnt = newCol % tabSize;
-          }
-          else {
-            spcCnt = newCol;
-          }
-
-          for (int i = 0; i < tabCnt; i++) {
-            space.append('\t');
-          }
-          for (int i = 0; i < spcCnt; i++) {
-            space.append(' ');
+        int wcol = editor.offsetToVisualPosition(woff).column;
+        int newCol = Math.max(0, wcol + dir * size);
+        if (wcol > 0 || soff != eoff) {
+          final String indent = getIndentText(newCol, tabSize, useTabs);
+          if (!indent.contentEquals(chars.subSequence(soff, woff))) {
+            from = soff;
+            to = woff;
+            replacement = indent;
           }
-
-          replaceText(editor, soff, woff, space.toString());
         }
       }
+
+      if (from < 0 && firstLine < 0) {
+        continue;
+      }
+      if (firstLine < 0) {
+        firstLine = l;
+      }
+      else {
+        text.append('\n');
+      }
+      if (from < 0) {
+        text.append(chars, soff, eoff);
+      }
+      else {
+        text.append(chars, soff, from).append(replacement).append(chars, to, eoff);
+        lastLine = l;
+        lastLength = text.length();
+      }
+    }
+
+    if (firstLine >= 0) {
+      text.setLength(lastLength);
+      final List<Mark> marks = VimPlugin.getMark().getLineMarks(editor, firstLine, lastLine);
+      replaceText(editor, EditorHelper.getLineStartOffset(editor, firstLine),
+                  EditorHelper.getLineEndOffset(editor, lastLine, true), text.toString());
+      VimPlugin.getMark().restoreLineMarks(editor, marks);
     }
 
     if (!CommandState.inInsertMode(editor)) {
@@ -1480,6 +1652,32 @@ public class ChangeGroup {
     EditorData.setLastColumn(editor, editor.getCaretModel().getVisualPosition().column);
   }
 
+  /**
+   * Builds the whitespace that indents text to the given column
+   */
+  @NotNull
+  private static String getIndentText(int col, int tabSize, boolean useTabs) {
+    final StringBuilder space = new StringBuilder(col);
+    int tabCnt = 0;
+    int spcCnt;
+    if (useTabs) {
+      tabCnt = col / tabSize;
+      spcCnt = col % tabSize;
+    }
+    else {
+      spcCnt = col;
+    }
+
+    for (int i = 0; i < tabCnt; i++) {
+      space.append('\t');
+    }
+    for (int i = 0; i < spcCnt; i++) {
+      space.append(' ');
+    }
+
+    return space.toString();
+  }
+
   /**
    * Insert text into the document
    *
@@ -1546,46 +1744,163 @@ public class ChangeGroup {
   }
 
   /**
-   * Sort range of text with a given comparator
+   * Moves whole lines below another line, as done by :move. The move is worked out from line offsets and done with
+   * one deletion and one insertion however many lines are moved.
    *
-   * @param editor          The editor to replace text in
-   * @param range           The range to sort
-   * @param lineComparator  The comparator to use to sort
-   * @return true if able to sort the text, false if not
+   * @param editor The editor to move the lines in
+   * @param range  The lines to move
+   * @param line   The line to put the lines below, -1 to put them above the first line
+   * @return true if able to move the lines, false if the target line is inside the range
    */
-  public boolean sortRange(@NotNull Editor editor, @NotNull LineRange range,
-                           @NotNull Comparator<String> lineComparator) {
+  public boolean moveLines(@NotNull Editor editor, @NotNull LineRange range, int line) {
     final int startLine = range.getStartLine();
     final int endLine = range.getEndLine();
-    final int count = endLine - startLine + 1;
-    if (count < 2) {
+    if (line >= startLine && line < endLine) {
       return false;
     }
+    final int lineCount = endLine - startLine + 1;
+    // Moving the lines right below or above themselves leaves the text as it is
+    if (line == endLine || line == startLine - 1) {
+      MotionGroup.moveCaret(editor, VimPlugin.getMotion().moveCaretToLineStartSkipLeading(editor, endLine));
+      return true;
+    }
 
-    final int startOffset = editor.getDocument().getLineStartOffset(startLine);
-    final int endOffset = editor.getDocument().getLineEndOffset(endLine);
+    final Document document = editor.getDocument();
+    final CharSequence chars = document.getCharsSequence();
+    int start = EditorHelper.getLineStartOffset(editor, startLine);
+    final int end = getLinesEndOffset(editor, endLine);
+    String text = chars.subSequence(start, end).toString();
+    // The last line of the file may have no line break, take the one of the line before instead
+    if (!text.endsWith("\n")) {
+      text += "\n";
+      if (start > 0) {
+        start--;
+      }
+    }
+
+    final int offset = line < 0 ? 0 : getLinesEndOffset(editor, line);
+    final boolean afterLastLine = isAfterLastLineWithoutBreak(editor, offset);
+    if (afterLastLine) {
+      text = "\n" + text.substring(0, text.length() - 1);
+    }
+
+    final int textStart;
+    if (offset >= end) {
+      document.insertString(offset, text);
+      document.deleteString(start, end);
+      textStart = offset - (end - start);
+    }
+    else {
+      document.deleteString(start, end);
+      document.insertString(offset, text);
+      textStart = offset;
+    }
+
+    finishLinesChange(editor, afterLastLine ? textStart + 1 : textStart, textStart + text.length(), lineCount);
+
+    return true;
+  }
+
+  /**
+   * Copies whole lines below another line, as done by :copy. All the copies are built from the source lines once and
+   * inserted with a single document change.
+   *
+   * @param editor The editor to copy the lines in
+   * @param range  The lines to copy
+   * @param line   The line to put the copies below, -1 to put them above the first line
+   * @param count  The number of copies to make
+   * @return true if able to copy the lines, false if not
+   */
+  public boolean copyLines(@NotNull Editor editor, @NotNull LineRange range, int line, int count) {
+    if (count < 1) {
+      return false;
+    }
+
+    final CharSequence chars = editor.getDocument().getCharsSequence();
+    final int start = EditorHelper.getLineStartOffset(editor, range.getStartLine());
+    final int end = getLinesEndOffset(editor, range.getEndLine());
+    final boolean addBreak = end == start || chars.charAt(end - 1) != '\n';
+    final int offset = line < 0 ? 0 : getLinesEndOffset(editor, line);
+    final boolean afterLastLine = isAfterLastLineWithoutBreak(editor, offset);
+
+    final StringBuilder text = new StringBuilder((end - start + 1) * count + 1);
+    if (afterLastLine) {
+      text.append('\n');
+    }
+    for (int i = 0; i < count; i++) {
+      text.append(chars, start, end);
+      if (addBreak) {
+        text.append('\n');
+      }
+    }
+    if (afterLastLine) {
+      text.setLength(text.length() - 1);
+    }
+
+    editor.getDocument().insertString(offset, text.toString());
 
-    return sortTextRange(editor, startOffset, endOffset, lineComparator);
+    final int lineCount = (range.getEndLine() - range.getStartLine() + 1) * count;
+    finishLinesChange(editor, afterLastLine ? offset + 1 : offset, offset + text.length(), lineCount);
+
+    return true;
+  }
+
+  /**
+   * Gets the offset just past the line break of the line, or the end of the file for the last line.
+   */
+  private static int getLinesEndOffset(@NotNull Editor editor, int line) {
+    return Math.min(EditorHelper.getLineEndOffset(editor, line, true) + 1, EditorHelper.getFileSize(editor));
+  }
+
+  private static boolean isAfterLastLineWithoutBreak(@NotNull Editor editor, int offset) {
+    final int size = EditorHelper.getFileSize(editor);
+    return offset == size && size > 0 && editor.getDocument().getCharsSequence().charAt(size - 1) != '\n';
   }
 
   /**
-   * Sorts a text range with a comparator. Returns true if a replace was performed, false otherwise.
+   * Sets the change marks to the inserted lines and puts the caret on the last of them like Vim does.
+   */
+  private static void finishLinesChange(@NotNull Editor editor, int textStart, int textEnd, int lineCount) {
+    VimPlugin.getMark().setChangeMarks(editor, new TextRange(textStart, textEnd));
+    final int lastLine = editor.offsetToLogicalPosition(textStart).line + lineCount - 1;
+    MotionGroup.moveCaret(editor, VimPlugin.getMotion().moveCaretToLineStartSkipLeading(editor, lastLine));
+  }
+
+  /**
+   * Sort range of lines
    *
-   * @param editor          The editor to replace text in
-   * @param start           The starting position for the sort
-   * @param end             The ending position for the sort
-   * @param lineComparator  The comparator to use to sort
+   * @param editor  The editor to replace text in
+   * @param range   The range to sort
+   * @param sorter  The sorter holding the :sort flags and pattern
    * @return true if able to sort the text, false if not
    */
-  private boolean sortTextRange(@NotNull Editor editor, int start, int end,
-                                @NotNull Comparator<String> lineComparator) {
-    final String selectedText = editor.getDocument().getText(new consulo.document.util.TextRange(start, end));
-    final List<String> lines = Lists.newArrayList(Splitter.on("\n").split(selectedText));
-    if (lines.size() < 1) {
+  public boolean sortRange(@NotNull Editor editor, @NotNull LineRange range, @NotNull final LineSorter sorter) {
+    final int startLine = range.getStartLine();
+    final int endLine = range.getEndLine();
+    final int count = endLine - startLine + 1;
+    if (count < 2) {
       return false;
     }
-    Collections.sort(lines, lineComparator);
-    replaceText(editor, start, end, StringUtil.join(lines, "\n"));
+
+    final LineSorter.Lines lines = sorter.prepare(editor, startLine, endLine);
+    if (lines == null) {
+      return false;
+    }
+
+    final int startOffset = editor.getDocument().getLineStartOffset(startLine);
+    final int endOffset = editor.getDocument().getLineEndOffset(endLine);
+    final String sorted = VimPlugin.getProcess().computeText(editor, endOffset - startOffset, "Sorting lines",
+                                                             new ProcessGroup.TextComputation() {
+      @NotNull
+      @Override
+      public String compute(@NotNull CharSequence text, @Nullable ProgressIndicator indicator) {
+        return sorter.sort(lines, text, indicator);
+      }
+    });
+    if (sorted == null) {
+      return false;
+    }
+    replaceText(editor, startOffset, endOffset, sorted);
     return true;
   }
 
@@ -1630,76 +1945,166 @@ public class ChangeGroup {
         logger.debug("found range " + range);
         logger.debug("text=" + text);
       }
-      String number = text;
       if (text.length() == 0) {
         return false;
       }
 
-      char ch = text.charAt(0);
-      if (hex && text.toLowerCase().startsWith("0x")) {
-        for (int i = text.length() - 1; i >= 2; i--) {
-          int index = "abcdefABCDEF".indexOf(text.charAt(i));
-          if (index >= 0) {
-            lastLower = index < 6;
-            break;
-          }
-        }
+      final String number = changeNumberText(text, count, alpha, hex, octal);
+      if (!text.equals(number)) {
+        replaceText(editor, range.getStartOffset(), range.getEndOffset(), number);
+        editor.getCaretModel().moveToOffset(range.getStartOffset() + number.length() - 1);
+      }
 
-        int num = (int)Long.parseLong(text.substring(2), 16);
-        num += count;
-        number = Integer.toHexString(num);
-        number = StringHelper.rightJustify(number, text.length() - 2, '0');
+      return true;
+    }
+  }
 
-        if (!lastLower) {
-          number = number.toUpperCase();
+  /**
+   * Increments or decrements the first number of every line in the visual range.
+   *
+   * @param editor      The editor to change
+   * @param range       The visual range, one part per line for blockwise selections
+   * @param count       The amount to add to each number, negative to subtract
+   * @param progressive True if the n-th changed number gets n times count added, as for |v_g_CTRL-A|
+   * @return True if at least one number was changed, false if not
+   */
+  public boolean changeNumberVisualMode(@NotNull final Editor editor, @NotNull TextRange range, final int count,
+                                        final boolean progressive) {
+    final BoundListOption nf = (BoundListOption)Options.getInstance().getOption("nrformats");
+    final boolean alpha = nf.contains("alpha");
+    final boolean hex = nf.contains("hex");
+    final boolean octal = nf.contains("octal");
+
+    final CharSequence chars = editor.getDocument().getCharsSequence();
+    final int[] starts = range.getStartOffsets();
+    final int[] ends = range.getEndOffsets();
+    final int rangeStart = range.getStartOffset();
+    final int rangeEnd = Math.min(EditorHelper.normalizeOffset(editor, range.getEndOffset()), chars.length());
+
+    // All the numbers are replaced in one change, from the first to the last changed number. The change deletes the
+    // marks on the lines in between, so they are set on the same lines again after it.
+    final List<TextRange> numberRanges = new ArrayList<TextRange>();
+    final List<String> numbers = new ArrayList<String>();
+    for (int i = 0; i < starts.length; i++) {
+      int segmentStart = starts[i];
+      final int segmentEnd = Math.min(ends[i], rangeEnd);
+      while (segmentStart < segmentEnd) {
+        int lineEnd = segmentStart;
+        while (lineEnd < segmentEnd && chars.charAt(lineEnd) != '\n') {
+          lineEnd++;
         }
 
-        number = text.substring(0, 2) + number;
-      }
-      else if (octal && text.startsWith("0") && text.length() > 1) {
-        int num = (int)Long.parseLong(text, 8);
-        num += count;
-        number = Integer.toOctalString(num);
-        number = "0" + StringHelper.rightJustify(number, text.length() - 1, '0');
-      }
-      else if (alpha && Character.isLetter(ch)) {
-        ch += count;
-        if (Character.isLetter(ch)) {
-          number = "" + ch;
+        // Lower case character by character, so the offsets of the match are the same as in the line
+        final char[] lower = new char[lineEnd - segmentStart];
+        for (int j = 0; j < lower.length; j++) {
+          lower[j] = Character.toLowerCase(chars.charAt(segmentStart + j));
         }
-      }
-      else if (ch == '-' || Character.isDigit(ch)) {
-        boolean pad = ch == '0';
-        int len = text.length();
-        if (ch == '-' && text.charAt(1) == '0') {
-          pad = true;
-          len--;
+        final TextRange found = SearchHelper.findNumberInText(new String(lower), 0, alpha, hex, octal);
+        if (found != null && found.getEndOffset() > found.getStartOffset()) {
+          final int numberStart = segmentStart + found.getStartOffset();
+          final int numberEnd = segmentStart + found.getEndOffset();
+          final String text = chars.subSequence(numberStart, numberEnd).toString();
+          final int step = progressive ? count * (numbers.size() + 1) : count;
+          final String number = changeNumberText(text, step, alpha, hex, octal);
+          if (!text.equals(number)) {
+            numberRanges.add(new TextRange(numberStart, numberEnd));
+            numbers.add(number);
+          }
         }
 
-        int num = Integer.parseInt(text);
-        num += count;
-        number = Integer.toString(num);
+        segmentStart = lineEnd + 1;
+      }
+    }
 
-        if (!octal && pad) {
-          boolean neg = false;
-          if (number.charAt(0) == '-') {
-            neg = true;
-            number = number.substring(1);
-          }
-          number = StringHelper.rightJustify(number, len, '0');
-          if (neg) {
-            number = "-" + number;
-          }
+    if (numbers.isEmpty()) {
+      return false;
+    }
+
+    final int changeStart = numberRanges.get(0).getStartOffset();
+    final int changeEnd = numberRanges.get(numberRanges.size() - 1).getEndOffset();
+    final StringBuilder text = new StringBuilder(changeEnd - changeStart);
+    int offset = changeStart;
+    for (int i = 0; i < numbers.size(); i++) {
+      final TextRange numberRange = numberRanges.get(i);
+      text.append(chars, offset, numberRange.getStartOffset()).append(numbers.get(i));
+      offset = numberRange.getEndOffset();
+    }
+    final List<Mark> marks = VimPlugin.getMark().getLineMarks(editor, editor.offsetToLogicalPosition(changeStart).line,
+                                                              editor.offsetToLogicalPosition(changeEnd).line);
+    replaceText(editor, changeStart, changeEnd, text.toString());
+    VimPlugin.getMark().restoreLineMarks(editor, marks);
+    MotionGroup.moveCaret(editor, rangeStart);
+
+    return true;
+  }
+
+  /**
+   * Computes the new text of a number found by {@link SearchHelper#findNumberInText}.
+   *
+   * @return The changed number, or the original text if it can't be changed
+   */
+  @NotNull
+  private String changeNumberText(@NotNull String text, int count, boolean alpha, boolean hex, boolean octal) {
+    String number = text;
+    char ch = text.charAt(0);
+    if (hex && text.toLowerCase().startsWith("0x")) {
+      for (int i = text.length() - 1; i >= 2; i--) {
+        int index = "abcdefABCDEF".indexOf(text.charAt(i));
+        if (index >= 0) {
+          lastLower = index < 6;
+          break;
         }
       }
 
-      if (!text.equals(number)) {
-        replaceText(editor, range.getStartOffset(), range.getEndOffset(), number);
-        editor.getCaretModel().moveToOffset(range.getStartOffset() + number.length() - 1);
+      int num = (int)Long.parseLong(text.substring(2), 16);
+      num += count;
+      number = Integer.toHexString(num);
+      number = StringHelper.rightJustify(number, text.length() - 2, '0');
+
+      if (!lastLower) {
+        number = number.toUpperCase();
       }
 
-      return true;
+      number = text.substring(0, 2) + number;
+    }
+    else if (octal && text.startsWith("0") && text.length() > 1) {
+      int num = (int)Long.parseLong(text, 8);
+      num += count;
+      number = Integer.toOctalString(num);
+      number = "0" + StringHelper.rightJustify(number, text.length() - 1, '0');
+    }
+    else if (alpha && Character.isLetter(ch)) {
+      ch += count;
+      if (Character.isLetter(ch)) {
+        number = "" + ch;
+      }
+    }
+    else if (ch == '-' || Character.isDigit(ch)) {
+      boolean pad = ch == '0';
+      int len = text.length();
+      if (ch == '-' && text.charAt(1) == '0') {
+        pad = true;
+        len--;
+      }
+
+      int num = Integer.parseInt(text);
+      num += count;
+      number = Integer.toString(num);
+
+      if (!octal && pad) {
+        boolean neg = false;
+        if (number.charAt(0) == '-') {
+          neg = true;
+          number = number.substring(1);
+        }
+        number = StringHelper.rightJustify(number, len, '0');
+        if (neg) {
+          number = "-" + number;
+        }
+      }
     }
+
+    return number;
   }
 
   private final List<Object> strokes = new ArrayList<Object>();
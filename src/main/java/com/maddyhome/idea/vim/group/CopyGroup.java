@@ -34,6 +34,8 @@ import com.maddyhome.idea.vim.helper.EditorHelper;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
 
 /**
@@ -110,7 +112,7 @@ public class CopyGroup {
   public boolean putTextBeforeCursor(@NotNull Editor editor, @NotNull DataContext context, int count, boolean indent,
                                      boolean cursorAfter) {
     // What register are we getting the text from?
-    Register reg = VimPlugin.getRegister().getLastRegister();
+    Register reg = VimPlugin.getRegister().getLastRegister(editor);
     if (reg != null) {
       if (reg.getType() == SelectionType.LINE_WISE && editor.isOneLineMode()) {
         return false;
@@ -144,7 +146,7 @@ public class CopyGroup {
    */
   public boolean putTextAfterCursor(@NotNull Editor editor, @NotNull DataContext context, int count, boolean indent,
                                     boolean cursorAfter) {
-    Register reg = VimPlugin.getRegister().getLastRegister();
+    Register reg = VimPlugin.getRegister().getLastRegister(editor);
     if (reg != null) {
       if (reg.getType() == SelectionType.LINE_WISE && editor.isOneLineMode()) {
         return false;
@@ -271,11 +273,8 @@ public class CopyGroup {
     int insertCnt = 0;
     int endOffset = offset;
     if (type != SelectionType.BLOCK_WISE) {
-      for (int i = 0; i < count; i++) {
-        VimPlugin.getChange().insertText(editor, offset, text);
-        insertCnt += text.length();
-        endOffset += text.length();
-      }
+      insertCnt = putRepeatedText(editor, offset, text, count);
+      endOffset += insertCnt;
     }
     else {
       LogicalPosition start = editor.offsetToLogicalPosition(offset);
@@ -292,62 +291,56 @@ public class CopyGroup {
       }
 
       if (line + lines >= EditorHelper.getLineCount(editor)) {
-        for (int i = 0; i < line + lines - EditorHelper.getLineCount(editor); i++) {
-          VimPlugin.getChange().insertText(editor, EditorHelper.getFileSize(editor, true), "\n");
-          insertCnt++;
+        final int missing = line + lines - EditorHelper.getLineCount(editor);
+        if (missing > 0) {
+          VimPlugin.getChange().insertText(editor, EditorHelper.getFileSize(editor, true), repeatText("\n", missing));
+          insertCnt += missing;
         }
       }
 
+      final List<String> segments = new ArrayList<String>();
       StringTokenizer parser = new StringTokenizer(text, "\n");
       int maxlen = 0;
       while (parser.hasMoreTokens()) {
         String segment = parser.nextToken();
+        segments.add(segment);
         maxlen = Math.max(maxlen, segment.length());
       }
 
-      parser = new StringTokenizer(text, "\n");
-      while (parser.hasMoreTokens()) {
-        String segment = parser.nextToken();
-        String origSegment = segment;
-        if (segment.length() < maxlen) {
+      // Each line gets the padding up to the column and then the segment count times, the first copy added without
+      // trailing padding where possible. The lines are changed one at a time, so the marks on them survive.
+      for (String origSegment : segments) {
+        final String segment = padSegment(origSegment, maxlen);
+        if (segment.length() > origSegment.length()) {
           logger.debug("short line");
-          StringBuilder extra = new StringBuilder(maxlen - segment.length());
-          for (int i = segment.length(); i < maxlen; i++) {
-            extra.append(' ');
-          }
-          segment = segment + extra.toString();
           if (col != 0 && col < EditorHelper.getLineLength(editor, line)) {
             origSegment = segment;
           }
         }
-        String pad = EditorHelper.pad(editor, line, col);
+        final String pad = EditorHelper.pad(editor, line, col);
 
-        int insoff = editor.logicalPositionToOffset(new LogicalPosition(line, col));
-        endOffset = insoff;
+        final int insoff = editor.logicalPositionToOffset(new LogicalPosition(line, col));
         if (logger.isDebugEnabled()) {
           logger.debug("segment='" + segment + "'");
           logger.debug("origSegment='" + origSegment + "'");
           logger.debug("insoff=" + insoff);
         }
-        for (int i = 0; i < count; i++) {
-          String txt = i == 0 ? origSegment : segment;
-          VimPlugin.getChange().insertText(editor, insoff, txt);
-          insertCnt += txt.length();
-          endOffset += txt.length();
-        }
-
-
         if (mode == CommandState.SubMode.VISUAL_LINE) {
-          VimPlugin.getChange().insertText(editor, endOffset, "\n");
-          insertCnt++;
-          endOffset++;
+          // Every segment becomes a new line before the line at the offset
+          VimPlugin.getChange().insertText(editor, insoff, origSegment + "\n");
+          final int inserted = origSegment.length() + 1 + putRepeatedText(editor, insoff, segment, count - 1);
+          insertCnt += inserted;
+          endOffset = insoff + inserted;
         }
         else {
+          VimPlugin.getChange().insertText(editor, insoff, origSegment);
+          int inserted = origSegment.length() + putRepeatedText(editor, insoff, segment, count - 1);
           if (pad.length() > 0) {
             VimPlugin.getChange().insertText(editor, insoff, pad);
-            insertCnt += pad.length();
-            endOffset += pad.length();
+            inserted += pad.length();
           }
+          insertCnt += inserted;
+          endOffset = insoff + inserted;
         }
 
         line++;
@@ -441,5 +434,75 @@ public class CopyGroup {
     VimPlugin.getMark().setChangeMarks(editor, new TextRange(offset, endOffset));
   }
 
+  /**
+   * Inserts the text count times with as few document changes as the memory budget for a put allows
+   *
+   * @return The number of characters inserted
+   */
+  private static int putRepeatedText(@NotNull Editor editor, int offset, @NotNull String text, int count) {
+    if (text.isEmpty() || count < 1) {
+      return 0;
+    }
+
+    final int perInsert = Math.max(1, Math.min(count, MAX_PUT_LENGTH / text.length()));
+    final String chunk = repeatText(text, perInsert);
+    int remaining = count;
+    while (remaining > 0) {
+      final int n = Math.min(remaining, perInsert);
+      VimPlugin.getChange().insertText(editor, offset, n == perInsert ? chunk : repeatText(text, n));
+      remaining -= n;
+    }
+
+    return (int)Math.min((long)text.length() * count, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Repeats the text by doubling the already repeated part, so a large count costs only a few array copies. Counted
+   * puts go through {@link #putRepeatedText}, which keeps the result within MAX_PUT_LENGTH.
+   */
+  @NotNull
+  private static String repeatText(@NotNull String text, int count) {
+    if (count <= 0) {
+      return "";
+    }
+    else if (count == 1) {
+      return text;
+    }
+
+    final long total = (long)text.length() * count;
+    if (total > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Repeated text too long: " + total);
+    }
+    final int length = (int)total;
+    final char[] result = new char[length];
+    text.getChars(0, text.length(), result, 0);
+    int filled = text.length();
+    while (filled < length) {
+      final int n = Math.min(filled, length - filled);
+      System.arraycopy(result, 0, result, filled, n);
+      filled += n;
+    }
+
+    return new String(result);
+  }
+
+  @NotNull
+  private static String padSegment(@NotNull String segment, int length) {
+    if (segment.length() >= length) {
+      return segment;
+    }
+    final StringBuilder res = new StringBuilder(length);
+    res.append(segment);
+    for (int i = segment.length(); i < length; i++) {
+      res.append(' ');
+    }
+    return res.toString();
+  }
+
+  /**
+   * The largest text in characters built in memory for a single insert of a counted put
+   */
+  private static final int MAX_PUT_LENGTH = 1 << 22;
+
   private static final Logger logger = Logger.getInstance(CopyGroup.class.getName());
 }
@@ -19,43 +19,91 @@
 package com.maddyhome.idea.vim.group;
 
 import consulo.codeEditor.Editor;
+import com.maddyhome.idea.vim.ex.ExException;
 import com.maddyhome.idea.vim.ex.ExOutputModel;
 import com.maddyhome.idea.vim.helper.EditorHelper;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
 import consulo.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.TreeMap;
 
 public class DigraphGroup {
   public DigraphGroup() {
-    loadDigraphs();
   }
 
   public char getDigraph(char ch1, char ch2) {
-    String key = new String(new char[]{ch1, ch2});
-    Character ch = digraphs.get(key);
-    if (ch == null) {
-      key = new String(new char[]{ch2, ch1});
-      ch = digraphs.get(key);
+    // Like Vim the digraph is looked up with its characters in both orders, the digraphs defined by the user first
+    char ch = getExactDigraph(ch1, ch2);
+    if (ch == NO_DIGRAPH) {
+      ch = getExactDigraph(ch2, ch1);
     }
 
-    if (ch == null) {
-      return ch2;
-    }
-    else {
-      return ch;
-    }
+    return ch == NO_DIGRAPH ? ch2 : ch;
+  }
+
+  private char getExactDigraph(char ch1, char ch2) {
+    final char ch = customDigraphs.get(ch1, ch2);
+    return ch != NO_DIGRAPH ? ch : ourDefaultDigraphs.get(ch1, ch2);
   }
 
-  public boolean parseCommandLine(@NotNull Editor editor, @NotNull String args) {
+  public boolean parseCommandLine(@NotNull Editor editor, @NotNull String args) throws ExException {
     if (args.length() == 0) {
       showDigraphs(editor);
 
       return true;
     }
 
-    return true;
+    return defineDigraphs(args);
+  }
+
+  /**
+   * Defines the digraphs given as <code>{char1}{char2} {number} ...</code>
+   */
+  public boolean defineDigraphs(@NotNull String args) throws ExException {
+    int i = 0;
+    while (true) {
+      while (i < args.length() && args.charAt(i) == ' ') {
+        i++;
+      }
+      if (i >= args.length()) {
+        return true;
+      }
+      if (i + 1 >= args.length()) {
+        throw new ExException(MessageHelper.message(Msg.e_invarg, args.substring(i)));
+      }
+      final char ch1 = args.charAt(i);
+      final char ch2 = args.charAt(i + 1);
+      if (ch1 == '\u001b' || ch2 == '\u001b') {
+        throw new ExException(MessageHelper.message(Msg.E104));
+      }
+      i += 2;
+      while (i < args.length() && args.charAt(i) == ' ') {
+        i++;
+      }
+      final int start = i;
+      while (i < args.length() && Character.isDigit(args.charAt(i))) {
+        i++;
+      }
+      if (start == i) {
+        throw new ExException(MessageHelper.message(Msg.E39));
+      }
+      final int code;
+      try {
+        code = Integer.parseInt(args.substring(start, i));
+      }
+      catch (NumberFormatException e) {
+        throw new ExException(MessageHelper.message(Msg.E39));
+      }
+      if (code == 0 || code > Character.MAX_VALUE) {
+        throw new ExException(MessageHelper.message(Msg.e_invarg, args.substring(start, i)));
+      }
+      customDigraphs.put(ch1, ch2, (char)code);
+    }
   }
 
   private void showDigraphs(@NotNull Editor editor) {
@@ -64,18 +112,22 @@ public class DigraphGroup {
       width = 80;
     }
     int colCount = width / 12;
-    int height = (int)Math.ceil((double)digraphs.size() / (double)colCount);
+
+    // The digraphs are listed by their characters, a digraph defined by the user replaces the default one
+    final TreeMap<Character, String> keys = new TreeMap<Character, String>();
+    ourDefaultDigraphs.collect(keys, customDigraphs);
+    customDigraphs.collect(keys, null);
 
     if (logger.isDebugEnabled()) {
       logger.debug("width=" + width);
       logger.debug("colCount=" + colCount);
-      logger.debug("height=" + height);
     }
 
     StringBuilder res = new StringBuilder();
     int cnt = 0;
-    for (Character code : keys.keySet()) {
-      String key = keys.get(code);
+    for (Map.Entry<Character, String> entry : keys.entrySet()) {
+      final char code = entry.getKey();
+      final String key = entry.getValue();
 
       res.append(key);
       res.append(' ');
@@ -114,21 +166,126 @@ public class DigraphGroup {
     ExOutputModel.getInstance(editor).output(res.toString());
   }
 
-  private void loadDigraphs() {
+  @NotNull
+  private static DigraphTable loadDefaultDigraphs() {
+    final DigraphTable table = new DigraphTable(defaultDigraphs.length / 3);
     for (int i = 0; i < defaultDigraphs.length; i += 3) {
       if (defaultDigraphs[i] != '\0' && defaultDigraphs[i + 1] != '\0') {
-        char ch = defaultDigraphs[i + 2];
-        String key = new String(new char[]{defaultDigraphs[i], defaultDigraphs[i + 1]});
-        digraphs.put(key, ch);
-        keys.put(ch, key);
+        table.put(defaultDigraphs[i], defaultDigraphs[i + 1], defaultDigraphs[i + 2]);
       }
     }
+    return table;
+  }
+
+  /**
+   * Open addressing hash table from the two characters of a digraph packed into an int to the digraph character. No
+   * object is created for a lookup.
+   */
+  private static class DigraphTable {
+    public DigraphTable(int capacity) {
+      int size = MIN_SIZE;
+      while (size < capacity * 2) {
+        size <<= 1;
+      }
+      myKeys = new int[size];
+      myValues = new char[size];
+    }
 
-    // TODO - load custom digraphs from .ideavimrc
+    public char get(char ch1, char ch2) {
+      if (myCount == 0) {
+        return NO_DIGRAPH;
+      }
+      final int key = pack(ch1, ch2);
+      final int mask = myKeys.length - 1;
+      for (int slot = hash(key) & mask; myKeys[slot] != 0; slot = (slot + 1) & mask) {
+        if (myKeys[slot] == key) {
+          return myValues[slot];
+        }
+      }
+      return NO_DIGRAPH;
+    }
+
+    public void put(char ch1, char ch2, char ch) {
+      final int key = pack(ch1, ch2);
+      if (myOrderCount == myOrder.length) {
+        myOrder = Arrays.copyOf(myOrder, Math.max(MIN_SIZE, myOrder.length * 2));
+      }
+      myOrder[myOrderCount++] = key;
+      insert(key, ch);
+    }
+
+    /**
+     * Adds the digraphs to the map from the digraph character to its two characters. They are added in the order they
+     * were put, so the last digraph put for a character is the one listed for it.
+     *
+     * @param keys      The map to add the digraphs to
+     * @param overrides The table whose digraphs replace these ones, the digraphs with the same two characters are
+     *                  left out as they no longer produce their character
+     */
+    public void collect(@NotNull Map<Character, String> keys, @Nullable DigraphTable overrides) {
+      for (int i = 0; i < myOrderCount; i++) {
+        final int key = myOrder[i];
+        final char ch1 = (char)(key >>> 16);
+        final char ch2 = (char)key;
+        if (overrides == null || overrides.get(ch1, ch2) == NO_DIGRAPH) {
+          keys.put(get(ch1, ch2), new String(new char[]{ch1, ch2}));
+        }
+      }
+    }
+
+    private void insert(int key, char ch) {
+      if ((myCount + 1) * 2 > myKeys.length) {
+        grow();
+      }
+      final int mask = myKeys.length - 1;
+      int slot = hash(key) & mask;
+      while (myKeys[slot] != 0 && myKeys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if (myKeys[slot] == 0) {
+        myKeys[slot] = key;
+        myCount++;
+      }
+      myValues[slot] = ch;
+    }
+
+    private void grow() {
+      final int[] keys = myKeys;
+      final char[] values = myValues;
+      myKeys = new int[keys.length * 2];
+      myValues = new char[keys.length * 2];
+      myCount = 0;
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != 0) {
+          insert(keys[i], values[i]);
+        }
+      }
+    }
+
+    /**
+     * The first character of a digraph is never NUL, so a packed key is never 0, which marks a free slot
+     */
+    private static int pack(char ch1, char ch2) {
+      return (ch1 << 16) | ch2;
+    }
+
+    private static int hash(int key) {
+      final int h = key * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    private static final int MIN_SIZE = 16;
+
+    @NotNull private int[] myKeys;
+    @NotNull private char[] myValues;
+    private int myCount = 0;
+    @NotNull private int[] myOrder = new int[0];
+    private int myOrderCount = 0;
   }
 
-  @NotNull private final HashMap<String, Character> digraphs = new HashMap<String, Character>(defaultDigraphs.length);
-  @NotNull private final TreeMap<Character, String> keys = new TreeMap<Character, String>();
+  private static final char NO_DIGRAPH = '\0';
+
+  @NotNull private final DigraphTable customDigraphs = new DigraphTable(0);
 
   private static final char defaultDigraphs[] = {
     /*
@@ -1729,5 +1886,10 @@ public class DigraphGroup {
     's', 't', '\ufb06', // LATIN SMALL LIGATURE ST
   };
 
+  /**
+   * Built once from the table above, it is never changed
+   */
+  @NotNull private static final DigraphTable ourDefaultDigraphs = loadDefaultDigraphs();
+
   private static final Logger logger = Logger.getInstance(DigraphGroup.class.getName());
 }
\ No newline at end of file
@@ -63,10 +63,21 @@ public class EditorGroup {
   private boolean isRefrainFromScrolling = false;
   private Boolean isKeyRepeat = null;
 
+  /**
+   * The values of the number options, they are read for every painted gutter line
+   */
+  private boolean myLineNumber = false;
+  private boolean myRelativeLineNumber = false;
+
   private final CaretListener myLineNumbersCaretListener = new CaretAdapter() {
     @Override
     public void caretPositionChanged(CaretEvent e) {
-      updateLineNumbers(e.getEditor());
+      // The annotation stays registered, only the relative numbers have to be painted again for the new caret line
+      final Editor editor = e.getEditor();
+      if (myRelativeLineNumber && EditorData.isFileEditor(editor) &&
+          e.getOldPosition().line != e.getNewPosition().line) {
+        ((EditorEx)editor).getGutterComponentEx().repaint();
+      }
     }
   };
 
@@ -74,9 +85,11 @@ public class EditorGroup {
 
   public EditorGroup() {
     final Options options = Options.getInstance();
+    updateNumberOptions();
     final OptionChangeListener numbersChangeListener = new OptionChangeListener() {
       @Override
       public void valueChange(OptionChangeEvent event) {
+        updateNumberOptions();
         for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
           updateLineNumbers(editor);
         }
@@ -161,14 +174,19 @@ public class EditorGroup {
     editor.getSettings().setLineNumbersShown(EditorData.isLineNumbersShown(editor));
   }
 
+  private void updateNumberOptions() {
+    final Options options = Options.getInstance();
+    myLineNumber = options.isSet(Options.NUMBER);
+    myRelativeLineNumber = options.isSet(Options.RELATIVE_NUMBER);
+  }
+
   private void updateLineNumbers(@NotNull Editor editor) {
     if (!EditorData.isFileEditor(editor)) {
       return;
     }
 
-    final Options options = Options.getInstance();
-    final boolean relativeLineNumber = options.isSet(Options.RELATIVE_NUMBER);
-    final boolean lineNumber = options.isSet(Options.NUMBER);
+    final boolean relativeLineNumber = myRelativeLineNumber;
+    final boolean lineNumber = myLineNumber;
 
     final EditorSettings settings = editor.getSettings();
     final boolean showEditorLineNumbers = (EditorData.isLineNumbersShown(editor) || lineNumber) && !relativeLineNumber;
@@ -246,43 +264,50 @@ public class EditorGroup {
     this.isKeyRepeat = value;
   }
 
-  private static class LineNumbersGutterProvider implements TextAnnotationGutterProvider {
+  private class LineNumbersGutterProvider implements TextAnnotationGutterProvider {
     @Nullable
     @Override
     public String getLineText(int line, @NotNull Editor editor) {
-      if (VimPlugin.isEnabled() && EditorData.isFileEditor(editor)) {
-        final Options options = Options.getInstance();
-        final boolean relativeLineNumber = options.isSet(Options.RELATIVE_NUMBER);
-        final boolean lineNumber = options.isSet(Options.NUMBER);
-        if (relativeLineNumber && lineNumber && isCaretLine(line, editor)) {
-          return lineNumberToString(getLineNumber(line), editor);
-        }
-        else if (relativeLineNumber) {
-          return lineNumberToString(getRelativeLineNumber(line, editor), editor);
+      if (myRelativeLineNumber && VimPlugin.isEnabled() && EditorData.isFileEditor(editor)) {
+        final int caretLine = editor.getCaretModel().getLogicalPosition().line;
+        final int width = getWidth(editor.getDocument().getLineCount());
+        if (myLineNumber && line == caretLine) {
+          return lineNumberToString(line + 1, width);
         }
+        final int visualLine = EditorHelper.logicalLineToVisualLine(editor, line);
+        final int caretVisualLine = EditorHelper.logicalLineToVisualLine(editor, caretLine);
+        return lineNumberToString(Math.abs(caretVisualLine - visualLine), width);
       }
       return null;
     }
 
-    private boolean isCaretLine(int line, @NotNull Editor editor) {
-      return line == editor.getCaretModel().getLogicalPosition().line;
-    }
-
-    private int getLineNumber(int line) {
-      return line + 1;
-    }
-
-    private int getRelativeLineNumber(int line, @NotNull Editor editor) {
-      final int visualLine = EditorHelper.logicalLineToVisualLine(editor, line);
-      final int currentLine = editor.getCaretModel().getLogicalPosition().line;
-      final int currentVisualLine = EditorHelper.logicalLineToVisualLine(editor, currentLine);
-      return Math.abs(currentVisualLine - visualLine);
+    private int getWidth(int lineCount) {
+      if (lineCount != myLineCount) {
+        myLineCount = lineCount;
+        myWidth = (int)Math.ceil(Math.log10(lineCount));
+      }
+      return myWidth;
     }
 
-    private String lineNumberToString(int lineNumber, @NotNull Editor editor) {
-      final int lineCount = editor.getDocument().getLineCount();
-      final int digitsCount = (int)Math.ceil(Math.log10(lineCount));
-      return StringHelper.leftJustify("" + lineNumber, digitsCount, ' ');
+    /**
+     * The formatted numbers are cached for the width of the current document, relative numbers and the lines at the
+     * beginning of the file are never formatted twice
+     */
+    @NotNull
+    private String lineNumberToString(int lineNumber, int width) {
+      if (width != myNumbersWidth) {
+        myNumbersWidth = width;
+        myNumbers = new String[myNumbers.length];
+      }
+      if (lineNumber >= myNumbers.length) {
+        return StringHelper.leftJustify(Integer.toString(lineNumber), width, ' ');
+      }
+      String text = myNumbers[lineNumber];
+      if (text == null) {
+        text = StringHelper.leftJustify(Integer.toString(lineNumber), width, ' ');
+        myNumbers[lineNumber] = text;
+      }
+      return text;
     }
 
     @Nullable
@@ -316,5 +341,12 @@ public class EditorGroup {
     @Override
     public void gutterClosed() {
     }
+
+    private static final int MAX_CACHED_NUMBERS = 1024;
+
+    @NotNull private String[] myNumbers = new String[MAX_CACHED_NUMBERS];
+    private int myNumbersWidth = -1;
+    private int myLineCount = -1;
+    private int myWidth = 0;
   }
 }
@@ -19,17 +19,23 @@
 package com.maddyhome.idea.vim.group;
 
 import com.maddyhome.idea.vim.helper.StringHelper;
-import com.maddyhome.idea.vim.option.NumberOption;
 import com.maddyhome.idea.vim.option.Options;
 import consulo.logging.Logger;
 import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
 
+/**
+ * Keeps the search, command, expression and input histories. Every history is an insertion ordered hash of its
+ * entries, so adding an entry, dropping its older duplicate and dropping the oldest entry are all constant time and
+ * large values of 'history' are cheap.
+ *
+ * The histories are kept in a side file in the user's home directory. New entries are appended to it when the
+ * plugin state is saved and the file is only rewritten once it holds many more lines than there are entries.
+ */
 public class HistoryGroup {
   public static final String SEARCH = "search";
   public static final String COMMAND = "cmd";
@@ -41,15 +47,18 @@ public class HistoryGroup {
       logger.debug("Add entry '" + text + "' to " + key);
     }
 
-    HistoryBlock block = blocks(key);
-    block.addEntry(text);
+    synchronized (pendingEntries) {
+      blocks(key).addEntry(text);
+      pendingEntries.add(new String[]{key, text});
+    }
   }
 
   @NotNull
   public List<HistoryEntry> getEntries(String key, int first, int last) {
-    HistoryBlock block = blocks(key);
-
-    List<HistoryEntry> entries = block.getEntries();
+    final List<HistoryEntry> entries;
+    synchronized (pendingEntries) {
+      entries = blocks(key).getEntries();
+    }
     List<HistoryEntry> res = new ArrayList<HistoryEntry>();
     if (first < 0) {
       if (-first > entries.size()) {
@@ -87,6 +96,9 @@ public class HistoryGroup {
     return res;
   }
 
+  /**
+   * Must be called holding the lock on {@link #pendingEntries}
+   */
   private HistoryBlock blocks(String key) {
     HistoryBlock block = histories.get(key);
     if (block == null) {
@@ -97,99 +109,219 @@ public class HistoryGroup {
     return block;
   }
 
-  public void saveData(@NotNull Element element) {
+  /**
+   * Appends the entries added since the last save to the history file. The histories are no longer stored in the
+   * plugin state. The entries stay pending until they are written, so a failed save is retried by the next one.
+   */
+  public synchronized void saveData(@NotNull Element element) {
     logger.debug("saveData");
-    Element hist = new Element("history");
 
-    saveData(hist, SEARCH);
-    saveData(hist, COMMAND);
-    saveData(hist, EXPRESSION);
-    saveData(hist, INPUT);
+    final List<String[]> entries;
+    final Map<String, List<HistoryEntry>> snapshot = new LinkedHashMap<String, List<HistoryEntry>>();
+    final boolean compact;
+    synchronized (pendingEntries) {
+      if (pendingEntries.isEmpty()) {
+        return;
+      }
+      entries = new ArrayList<String[]>(pendingEntries);
 
-    element.addContent(hist);
-  }
+      int total = 0;
+      for (HistoryBlock block : histories.values()) {
+        total += block.size();
+      }
+      // Rewrite the file when most of its lines are duplicates or entries dropped from the histories
+      compact = fileLines + entries.size() > 2 * total + COMPACT_SLACK;
+      if (compact) {
+        for (String key : KEYS) {
+          final HistoryBlock block = histories.get(key);
+          if (block != null) {
+            snapshot.put(key, block.getEntries());
+          }
+        }
+      }
+    }
 
-  private void saveData(@NotNull Element element, String key) {
-    final HistoryBlock block = histories.get(key);
-    if (block == null) {
+    final File file = getHistoryFile();
+    int written = 0;
+    try {
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, !compact), UTF_8));
+      try {
+        if (compact) {
+          for (Map.Entry<String, List<HistoryEntry>> history : snapshot.entrySet()) {
+            for (HistoryEntry entry : history.getValue()) {
+              writeEntry(writer, history.getKey(), entry.getEntry());
+              written++;
+            }
+          }
+        }
+        else {
+          for (String[] entry : entries) {
+            writeEntry(writer, entry[0], entry[1]);
+            written++;
+          }
+        }
+      }
+      finally {
+        writer.close();
+      }
+    }
+    catch (IOException e) {
+      logger.warn("Unable to save the history to " + file, e);
       return;
     }
 
-    final Element root = new Element("history-" + key);
-
-    for (HistoryEntry entry : block.getEntries()) {
-      final Element entryElement = new Element("entry");
-      StringHelper.setSafeXmlText(entryElement, entry.getEntry());
-      root.addContent(entryElement);
+    synchronized (pendingEntries) {
+      // Entries added while the file was written stay pending
+      pendingEntries.subList(0, entries.size()).clear();
+      fileLines = compact ? written : fileLines + written;
     }
-
-    element.addContent(root);
   }
 
+  /**
+   * Reads the histories from the history file, or from the plugin state saved by older versions when there is no
+   * history file yet.
+   */
   public void readData(@NotNull Element element) {
     logger.debug("readData");
+    final File file = getHistoryFile();
+    if (file.isFile()) {
+      readFile(file);
+      return;
+    }
+
     Element hist = element.getChild("history");
     if (hist == null) {
       return;
     }
 
-    readData(hist, SEARCH);
-    readData(hist, COMMAND);
-    readData(hist, EXPRESSION);
-    readData(hist, INPUT);
+    for (String key : KEYS) {
+      readData(hist, key);
+    }
   }
 
   private void readData(@NotNull Element element, String key) {
-    HistoryBlock block = histories.get(key);
-    if (block != null) {
-      return;
-    }
+    synchronized (pendingEntries) {
+      HistoryBlock block = histories.get(key);
+      if (block != null) {
+        return;
+      }
 
-    block = new HistoryBlock();
-    histories.put(key, block);
+      block = new HistoryBlock();
+      histories.put(key, block);
 
-    final Element root = element.getChild("history-" + key);
-    if (root != null) {
-      //noinspection unchecked
-      List<Element> items = root.getChildren("entry");
-      for (Element item : items) {
-        final String text = StringHelper.getSafeXmlText(item);
-        if (text != null) {
-          block.addEntry(text);
+      final Element root = element.getChild("history-" + key);
+      if (root != null) {
+        //noinspection unchecked
+        List<Element> items = root.getChildren("entry");
+        for (Element item : items) {
+          final String text = StringHelper.getSafeXmlText(item);
+          if (text != null) {
+            block.addEntry(text);
+            pendingEntries.add(new String[]{key, text});
+          }
         }
       }
     }
   }
 
-  private static int maxLength() {
-    NumberOption opt = (NumberOption)Options.getInstance().getOption("history");
-
-    return opt.value();
+  private void readFile(@NotNull File file) {
+    try {
+      final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          final int tab = line.indexOf('\t');
+          synchronized (pendingEntries) {
+            fileLines++;
+            if (tab > 0) {
+              blocks(line.substring(0, tab)).addEntry(unescape(line.substring(tab + 1)));
+            }
+          }
+        }
+      }
+      finally {
+        reader.close();
+      }
+    }
+    catch (IOException e) {
+      logger.warn("Unable to read the history from " + file, e);
+    }
   }
 
-  private static class HistoryBlock {
-    public void addEntry(@NotNull String text) {
-      for (int i = 0; i < entries.size(); i++) {
-        HistoryEntry entry = entries.get(i);
-        if (text.equals(entry.getEntry())) {
-          entries.remove(i);
+  private static void writeEntry(@NotNull Writer writer, @NotNull String key, @NotNull String text) throws IOException {
+    writer.write(key);
+    writer.write('\t');
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      switch (c) {
+        case '\\':
+          writer.write("\\\\");
           break;
-        }
+        case '\n':
+          writer.write("\\n");
+          break;
+        case '\r':
+          writer.write("\\r");
+          break;
+        default:
+          writer.write(c);
+      }
+    }
+    writer.write('\n');
+  }
+
+  @NotNull
+  private static String unescape(@NotNull String text) {
+    if (text.indexOf('\\') < 0) {
+      return text;
+    }
+    final StringBuilder res = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '\\' && i + 1 < text.length()) {
+        final char next = text.charAt(++i);
+        res.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+      }
+      else {
+        res.append(c);
       }
+    }
+    return res.toString();
+  }
 
-      entries.add(new HistoryEntry(++counter, text));
+  @NotNull
+  private static File getHistoryFile() {
+    return new File(System.getProperty("user.home"), HISTORY_FILE);
+  }
 
-      if (entries.size() > maxLength()) {
-        entries.remove(0);
+  private static int maxLength() {
+    return Options.HISTORY.get();
+  }
+
+  private static class HistoryBlock {
+    public void addEntry(@NotNull String text) {
+      // Removing the old entry first moves the text to the end of the insertion order
+      entries.remove(text);
+      entries.put(text, new HistoryEntry(++counter, text));
+
+      final int max = maxLength();
+      final Iterator<HistoryEntry> oldest = entries.values().iterator();
+      while (entries.size() > max) {
+        oldest.next();
+        oldest.remove();
       }
     }
 
     @NotNull
     public List<HistoryEntry> getEntries() {
-      return entries;
+      return new ArrayList<HistoryEntry>(entries.values());
+    }
+
+    public int size() {
+      return entries.size();
     }
 
-    @NotNull private final List<HistoryEntry> entries = new ArrayList<HistoryEntry>();
+    @NotNull private final LinkedHashMap<String, HistoryEntry> entries = new LinkedHashMap<String, HistoryEntry>();
     private int counter;
   }
 
@@ -212,7 +344,21 @@ public class HistoryGroup {
     @NotNull private final String entry;
   }
 
+  /**
+   * Guarded by the lock on {@link #pendingEntries}
+   */
   @NotNull private final Map<String, HistoryBlock> histories = new HashMap<String, HistoryBlock>();
+  /**
+   * Entries added since the history file was last written, as key and text pairs. Its lock also guards the histories
+   * and the number of lines in the history file.
+   */
+  @NotNull private final List<String[]> pendingEntries = new ArrayList<String[]>();
+  private int fileLines = 0;
+
+  private static final String[] KEYS = {SEARCH, COMMAND, EXPRESSION, INPUT};
+  private static final String HISTORY_FILE = ".ideavim_history";
+  private static final int COMPACT_SLACK = 1000;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
 
   private static final Logger logger = Logger.getInstance(HistoryGroup.class.getName());
 }
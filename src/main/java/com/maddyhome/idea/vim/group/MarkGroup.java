@@ -40,6 +40,7 @@ import com.maddyhome.idea.vim.common.Mark;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.helper.EditorHelper;
+import com.maddyhome.idea.vim.helper.LatencyStats;
 import com.maddyhome.idea.vim.helper.SearchHelper;
 import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
@@ -322,6 +323,50 @@ public class MarkGroup {
     return list;
   }
 
+  /**
+   * Gets copies of the marks on the given lines. A change replacing several lines in one go deletes the marks on
+   * them, so the copies are set again once the lines are replaced. The change marks are left out as the change sets
+   * them itself.
+   *
+   * @param editor    The editor to get the marks for
+   * @param startLine The first line
+   * @param endLine   The last line
+   * @return The marks on the lines
+   */
+  @NotNull
+  public List<Mark> getLineMarks(@NotNull Editor editor, int startLine, int endLine) {
+    final List<Mark> res = new ArrayList<Mark>();
+    final HashMap<Character, Mark> marks = getAllFileMarks(editor.getDocument());
+    if (marks != null) {
+      for (Mark mark : marks.values()) {
+        final int line = mark.getLogicalLine();
+        if (!mark.isClear() && line >= startLine && line <= endLine &&
+            mark.getKey() != MARK_CHANGE_START && mark.getKey() != MARK_CHANGE_END &&
+            mark.getKey() != MARK_CHANGE_POS) {
+          res.add(new Mark(mark.getKey(), line, mark.getCol(), mark.getFilename()));
+        }
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * Sets the marks returned by {@link #getLineMarks} again after their lines were replaced by the same number of
+   * lines. Every mark keeps its line and column, up to the end of the new line.
+   *
+   * @param editor The editor to set the marks in
+   * @param marks  The marks to set
+   */
+  public void restoreLineMarks(@NotNull Editor editor, @NotNull List<Mark> marks) {
+    for (Mark mark : marks) {
+      final int line = mark.getLogicalLine();
+      final int offset = Math.min(EditorHelper.getOffset(editor, line, mark.getCol()),
+                                  EditorHelper.getLineEndOffset(editor, line, true));
+      setMark(editor, mark.getKey(), offset);
+    }
+  }
+
   @NotNull
   public List<Jump> getJumps() {
     return jumps;
@@ -657,6 +702,16 @@ public class MarkGroup {
      * @param event The change event
      */
     public void beforeDocumentChange(@NotNull DocumentEvent event) {
+      final long start = LatencyStats.start();
+      try {
+        doBeforeDocumentChange(event);
+      }
+      finally {
+        LatencyStats.record(LatencyStats.Phase.MARK_LISTENER, start);
+      }
+    }
+
+    private void doBeforeDocumentChange(@NotNull DocumentEvent event) {
       if (!VimPlugin.isEnabled()) return;
 
       if (logger.isDebugEnabled()) logger.debug("MarkUpdater before, event = " + event);
@@ -675,6 +730,16 @@ public class MarkGroup {
      * @param event The change event
      */
     public void documentChanged(@NotNull DocumentEvent event) {
+      final long start = LatencyStats.start();
+      try {
+        doDocumentChanged(event);
+      }
+      finally {
+        LatencyStats.record(LatencyStats.Phase.MARK_LISTENER, start);
+      }
+    }
+
+    private void doDocumentChanged(@NotNull DocumentEvent event) {
       if (!VimPlugin.isEnabled()) return;
 
       if (logger.isDebugEnabled()) logger.debug("MarkUpdater after, event = " + event);
@@ -30,8 +30,6 @@ import com.maddyhome.idea.vim.ex.ExOutputModel;
 import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.helper.EditorHelper;
 import com.maddyhome.idea.vim.helper.SearchHelper;
-import com.maddyhome.idea.vim.option.BoundStringOption;
-import com.maddyhome.idea.vim.option.NumberOption;
 import com.maddyhome.idea.vim.option.Options;
 import com.maddyhome.idea.vim.ui.ExEntryPanel;
 import consulo.application.ApplicationManager;
@@ -52,6 +50,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.awt.event.MouseEvent;
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 
 /**
  * This handles all motion related commands and marks
@@ -782,7 +783,7 @@ public class MotionGroup {
   }
 
   private void scrollColumnToScreenColumn(@NotNull Editor editor, int column) {
-    int scrollOffset = ((NumberOption)Options.getInstance().getOption("sidescrolloff")).value();
+    int scrollOffset = Options.SIDESCROLLOFF.get();
     int width = EditorHelper.getScreenWidth(editor);
     if (scrollOffset > width / 2) {
       scrollOffset = width / 2;
@@ -805,7 +806,7 @@ public class MotionGroup {
 
   private void scrollLineToScreenLine(@NotNull Editor editor, int line, int rawCount, int count,
                                       boolean start) {
-    int scrollOffset = ((NumberOption)Options.getInstance().getOption("scrolloff")).value();
+    int scrollOffset = Options.SCROLLOFF.get();
     int height = EditorHelper.getScreenHeight(editor);
     if (scrollOffset > height / 2) {
       scrollOffset = height / 2;
@@ -852,7 +853,7 @@ public class MotionGroup {
 
   private int moveCaretToScreenLine(@NotNull Editor editor, int line) {
     //saveJumpLocation(editor, context);
-    int scrollOffset = ((NumberOption)Options.getInstance().getOption("scrolloff")).value();
+    int scrollOffset = Options.SCROLLOFF.get();
     int height = EditorHelper.getScreenHeight(editor);
     if (scrollOffset > height / 2) {
       scrollOffset = height / 2;
@@ -871,10 +872,9 @@ public class MotionGroup {
   }
 
   public boolean scrollHalfPage(@NotNull Editor editor, int dir, int count) {
-    NumberOption scroll = (NumberOption)Options.getInstance().getOption("scroll");
     int height = EditorHelper.getScreenHeight(editor) / 2;
     if (count == 0) {
-      count = scroll.value();
+      count = Options.SCROLL.get();
       if (count == 0) {
         count = height;
       }
@@ -910,8 +910,8 @@ public class MotionGroup {
   }
 
   public static void moveCaretToView(@NotNull Editor editor) {
-    int scrollOffset = ((NumberOption)Options.getInstance().getOption("scrolloff")).value();
-    int sideScrollOffset = ((NumberOption)Options.getInstance().getOption("sidescrolloff")).value();
+    int scrollOffset = Options.SCROLLOFF.get();
+    int sideScrollOffset = Options.SIDESCROLLOFF.get();
     int height = EditorHelper.getScreenHeight(editor);
     int width = EditorHelper.getScreenWidth(editor);
     if (scrollOffset > height / 2) {
@@ -1225,7 +1225,7 @@ public class MotionGroup {
     if (offset >= 0 && offset <= editor.getDocument().getTextLength()) {
       final boolean keepVisual = forceKeepVisual || keepVisual(editor);
       if (editor.getCaretModel().getOffset() != offset) {
-        if (!keepVisual) {
+        if (!keepVisual && !EditorData.isForEachCaret(editor)) {
           // XXX: Hack for preventing the merge multiple carets that results in loosing the primary caret for |v_d|
           editor.getCaretModel().removeSecondaryCarets();
         }
@@ -1293,10 +1293,10 @@ public class MotionGroup {
     final int line = position.line;
     final int column = position.column;
     final int topLine = EditorHelper.getVisualLineAtTopOfScreen(editor);
-    int scrollOffset = ((NumberOption)Options.getInstance().getOption("scrolloff")).value();
+    int scrollOffset = Options.SCROLLOFF.get();
     int scrollJumpSize = 0;
     if (scrollJump) {
-      scrollJumpSize = Math.max(0, ((NumberOption)Options.getInstance().getOption("scrolljump")).value() - 1);
+      scrollJumpSize = Math.max(0, Options.SCROLLJUMP.get() - 1);
     }
 
     int height = EditorHelper.getScreenHeight(editor);
@@ -1342,10 +1342,10 @@ public class MotionGroup {
     int visualColumn = EditorHelper.getVisualColumnAtLeftOfScreen(editor);
     int width = EditorHelper.getScreenWidth(editor);
     scrollJump = (CommandState.getInstance(editor).getFlags() & Command.FLAG_IGNORE_SIDE_SCROLL_JUMP) == 0;
-    scrollOffset = ((NumberOption)Options.getInstance().getOption("sidescrolloff")).value();
+    scrollOffset = Options.SIDESCROLLOFF.get();
     scrollJumpSize = 0;
     if (scrollJump) {
-      scrollJumpSize = Math.max(0, ((NumberOption)Options.getInstance().getOption("sidescroll")).value() - 1);
+      scrollJumpSize = Math.max(0, Options.SIDESCROLL.get() - 1);
       if (scrollJumpSize == 0) {
         scrollJumpSize = width / 2;
       }
@@ -1475,9 +1475,8 @@ public class MotionGroup {
     visualStart = editor.getSelectionModel().getSelectionStart();
     visualEnd = editor.getSelectionModel().getSelectionEnd();
     if (CommandState.getInstance(editor).getSubMode() == CommandState.SubMode.VISUAL_CHARACTER) {
-      BoundStringOption opt = (BoundStringOption)Options.getInstance().getOption("selection");
       int adj = 1;
-      if (opt.getValue().equals("exclusive")) {
+      if (Options.SELECTION.get().equals("exclusive")) {
         adj = 0;
       }
       visualEnd -= adj;
@@ -1581,6 +1580,7 @@ public class MotionGroup {
       editor.getSelectionModel().removeSelection();
       editor.getCaretModel().removeSecondaryCarets();
     }
+    EditorData.setBlockCarets(editor, null);
     CommandState.getInstance(editor).setSubMode(CommandState.SubMode.NONE);
   }
 
@@ -1654,9 +1654,8 @@ public class MotionGroup {
         start = end;
         end = t;
       }
-      final BoundStringOption opt = (BoundStringOption)Options.getInstance().getOption("selection");
       int lineEnd = EditorHelper.getLineEndForOffset(editor, end);
-      final int adj = opt.getValue().equals("exclusive") || end == lineEnd ? 0 : 1;
+      final int adj = Options.SELECTION.get().equals("exclusive") || end == lineEnd ? 0 : 1;
       end = Math.min(EditorHelper.getFileSize(editor), end + adj);
       editor.getSelectionModel().setSelection(start, end);
     }
@@ -1679,18 +1678,23 @@ public class MotionGroup {
       else {
         blockStart = new LogicalPosition(blockStart.line, blockStart.column + 1);
       }
-      editor.getSelectionModel().setBlockSelection(blockStart, blockEnd);
+      final boolean lastColumn = EditorData.getLastColumn(editor) >= MotionGroup.LAST_COLUMN;
+      if (!updateBlockCarets(editor, blockStart, blockEnd, lastColumn)) {
+        editor.getSelectionModel().setBlockSelection(blockStart, blockEnd);
 
-      for (Caret caret : editor.getCaretModel().getAllCarets()) {
-        int line = caret.getLogicalPosition().line;
-        int lineEndOffset = EditorHelper.getLineEndOffset(editor, line, true);
+        final List<Caret> carets = editor.getCaretModel().getAllCarets();
+        for (Caret caret : carets) {
+          int line = caret.getLogicalPosition().line;
+          int lineEndOffset = EditorHelper.getLineEndOffset(editor, line, true);
 
-        if (EditorData.getLastColumn(editor) >= MotionGroup.LAST_COLUMN) {
-          caret.setSelection(caret.getSelectionStart(), lineEndOffset);
-        }
-        if (!EditorHelper.isLineEmpty(editor, line, false)) {
-          caret.moveToOffset(caret.getSelectionEnd() - 1);
+          if (lastColumn) {
+            caret.setSelection(caret.getSelectionStart(), lineEndOffset);
+          }
+          if (!EditorHelper.isLineEmpty(editor, line, false)) {
+            caret.moveToOffset(caret.getSelectionEnd() - 1);
+          }
         }
+        EditorData.setBlockCarets(editor, BlockCarets.create(editor, blockStart, blockEnd, lastColumn, carets));
       }
       editor.getCaretModel().moveToOffset(end);
     }
@@ -1698,6 +1702,129 @@ public class MotionGroup {
     VimPlugin.getMark().setVisualSelectionMarks(editor, new TextRange(start, end));
   }
 
+  /**
+   * Updates the carets of a block selection when only the line of its moving end has changed. Just the carets of the
+   * lines entering or leaving the block are added or removed, the carets of the other lines stay as they are.
+   *
+   * @return True if the carets were updated, false if the whole block selection has to be set up again
+   */
+  private boolean updateBlockCarets(@NotNull Editor editor, @NotNull LogicalPosition blockStart,
+                                    @NotNull LogicalPosition blockEnd, boolean lastColumn) {
+    final BlockCarets block = EditorData.getBlockCarets(editor);
+    final CaretModel caretModel = editor.getCaretModel();
+    if (block == null || !block.matches(editor, blockStart, blockEnd, lastColumn) ||
+        caretModel.getCaretCount() != block.carets.size()) {
+      EditorData.setBlockCarets(editor, null);
+      return false;
+    }
+    final int anchor = blockStart.line;
+    final int oldEnd = block.endLine;
+    final int newEnd = blockEnd.line;
+    // The block is flipped over its anchor line
+    if (oldEnd < anchor && newEnd > anchor || oldEnd > anchor && newEnd < anchor) {
+      EditorData.setBlockCarets(editor, null);
+      return false;
+    }
+    block.endLine = newEnd;
+    if (oldEnd == newEnd && caretModel.getPrimaryCaret() == block.getEndCaret()) {
+      return true;
+    }
+
+    final boolean down = oldEnd > anchor || newEnd > anchor;
+    final int dir = down ? 1 : -1;
+    // The caret of the new end line is removed as well so that it can be added again as the primary caret. The caret
+    // of the anchor line stays, when it is the only caret it is the primary one anyway.
+    while (block.carets.size() > 1 && (anchor + dir * (block.carets.size() - 1)) * dir >= newEnd * dir) {
+      final Caret caret = down ? block.carets.removeLast() : block.carets.removeFirst();
+      if (!caret.isValid() || !caretModel.removeCaret(caret)) {
+        EditorData.setBlockCarets(editor, null);
+        return false;
+      }
+    }
+    for (int line = anchor + dir * block.carets.size(); line * dir <= newEnd * dir; line += dir) {
+      final Caret caret = block.addCaret(editor, line);
+      if (caret == null) {
+        EditorData.setBlockCarets(editor, null);
+        return false;
+      }
+      if (down) {
+        block.carets.addLast(caret);
+      }
+      else {
+        block.carets.addFirst(caret);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The carets of a block selection, one for each line from the top to the bottom of the block. It is kept in the
+   * user data of the editor while the block is selected.
+   */
+  public static class BlockCarets {
+    @Nullable
+    public static BlockCarets create(@NotNull Editor editor, @NotNull LogicalPosition blockStart,
+                                     @NotNull LogicalPosition blockEnd, boolean lastColumn,
+                                     @NotNull List<Caret> carets) {
+      if (carets.size() != Math.abs(blockEnd.line - blockStart.line) + 1) {
+        return null;
+      }
+      final BlockCarets res = new BlockCarets(editor, blockStart, blockEnd, lastColumn);
+      res.carets.addAll(carets);
+      return res;
+    }
+
+    private BlockCarets(@NotNull Editor editor, @NotNull LogicalPosition blockStart, @NotNull LogicalPosition blockEnd,
+                        boolean lastColumn) {
+      this.modificationStamp = editor.getDocument().getModificationStamp();
+      this.anchorLine = blockStart.line;
+      this.startColumn = blockStart.column;
+      this.endColumn = blockEnd.column;
+      this.lastColumn = lastColumn;
+      this.endLine = blockEnd.line;
+    }
+
+    public boolean matches(@NotNull Editor editor, @NotNull LogicalPosition blockStart,
+                           @NotNull LogicalPosition blockEnd, boolean lastColumn) {
+      return modificationStamp == editor.getDocument().getModificationStamp() &&
+             anchorLine == blockStart.line && startColumn == blockStart.column && endColumn == blockEnd.column &&
+             this.lastColumn == lastColumn;
+    }
+
+    @Nullable
+    public Caret getEndCaret() {
+      return carets.isEmpty() ? null : endLine >= anchorLine ? carets.getLast() : carets.getFirst();
+    }
+
+    /**
+     * Adds the primary caret for a line of the block with the same selection the block selection would give it
+     */
+    @Nullable
+    public Caret addCaret(@NotNull Editor editor, int line) {
+      final int selectionStart = editor.logicalPositionToOffset(new LogicalPosition(line, Math.min(startColumn,
+                                                                                                   endColumn)));
+      int selectionEnd = editor.logicalPositionToOffset(new LogicalPosition(line, Math.max(startColumn, endColumn)));
+      if (lastColumn) {
+        selectionEnd = EditorHelper.getLineEndOffset(editor, line, true);
+      }
+      final int offset = EditorHelper.isLineEmpty(editor, line, false) ? selectionEnd : selectionEnd - 1;
+      final Caret caret = editor.getCaretModel().addCaret(editor.offsetToVisualPosition(offset), true);
+      if (caret != null) {
+        caret.setSelection(selectionStart, selectionEnd);
+        caret.moveToOffset(offset);
+      }
+      return caret;
+    }
+
+    private final long modificationStamp;
+    private final int anchorLine;
+    private final int startColumn;
+    private final int endColumn;
+    private final boolean lastColumn;
+    private int endLine;
+    @NotNull private final Deque<Caret> carets = new ArrayDeque<Caret>();
+  }
+
   public boolean swapVisualEnds(@NotNull Editor editor) {
     int t = visualEnd;
     visualEnd = visualStart;
@@ -18,9 +18,14 @@
 
 package com.maddyhome.idea.vim.group;
 
+import consulo.application.ApplicationManager;
+import consulo.application.progress.ProgressIndicator;
+import consulo.application.progress.ProgressManager;
 import consulo.dataContext.DataContext;
 import consulo.codeEditor.Editor;
-import consulo.util.io.CharSequenceReader;
+import consulo.document.Document;
+import consulo.project.Project;
+import consulo.util.lang.ref.Ref;
 import com.maddyhome.idea.vim.KeyHandler;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.Command;
@@ -29,6 +34,8 @@ import com.maddyhome.idea.vim.command.MappingMode;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.CommandParser;
 import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
 import com.maddyhome.idea.vim.helper.UiHelper;
 import com.maddyhome.idea.vim.ui.ExEntryPanel;
 import consulo.logging.Logger;
@@ -37,6 +44,13 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -182,47 +196,314 @@ public class ProcessGroup {
     return initText;
   }
 
+  /**
+   * Filters the range through an external command. The input is streamed to the command from a snapshot of the
+   * document while its output is read concurrently, under a cancellable progress, and the output replaces the range
+   * in a single document update.
+   *
+   * @return True if the range was replaced, false if the command was cancelled
+   */
   public boolean executeFilter(@NotNull Editor editor, @NotNull TextRange range,
                                @NotNull String command) throws IOException {
-    final CharSequence charsSequence = editor.getDocument().getCharsSequence();
+    final Document document = editor.getDocument();
     final int startOffset = range.getStartOffset();
     final int endOffset = range.getEndOffset();
-    final String output = executeCommand(command, charsSequence.subSequence(startOffset, endOffset));
-    editor.getDocument().replaceString(startOffset, endOffset, output);
+    final CharSequence input = document.getImmutableCharSequence().subSequence(startOffset, endOffset);
+    final CharSequence output = executeCommand(editor.getProject(), command, input);
+    if (output == null) {
+      return false;
+    }
+    document.replaceString(startOffset, endOffset, output);
     return true;
   }
 
+  /**
+   * Computes new text for a part of the document. Large parts are computed on a snapshot of the document in a
+   * background task under a modal progress that can be cancelled. The result is only returned if the document hasn't
+   * changed meanwhile, so the caller can apply it with the same offsets in its write action.
+   *
+   * @param length The length of the text the computation works on
+   * @return The computed text, null if the computation was cancelled or the document changed
+   */
+  @Nullable
+  public String computeText(@NotNull Editor editor, int length, @NotNull String title,
+                            @NotNull final TextComputation computation) {
+    final Document document = editor.getDocument();
+    final CharSequence snapshot = document.getImmutableCharSequence();
+    if (length < BACKGROUND_COMPUTATION_LENGTH) {
+      return computation.compute(snapshot, null);
+    }
+
+    final long stamp = document.getModificationStamp();
+    final Ref<String> result = Ref.create();
+    final boolean completed = ProgressManager.getInstance().runProcessWithProgressSynchronously(new Runnable() {
+      @Override
+      public void run() {
+        result.set(computation.compute(snapshot, ProgressManager.getInstance().getProgressIndicator()));
+      }
+    }, title, true, editor.getProject());
+
+    if (!completed) {
+      VimPlugin.showMessage(MessageHelper.message(Msg.e_interr));
+      return null;
+    }
+    if (document.getModificationStamp() != stamp) {
+      VimPlugin.showMessage(MessageHelper.message(Msg.e_changed));
+      return null;
+    }
+    return result.get();
+  }
+
+  /**
+   * A computation that works only on the text, so it may run outside of the event dispatch thread
+   */
+  public interface TextComputation {
+    /**
+     * @param text      An immutable snapshot of the document text
+     * @param indicator The progress of the background task, null if the computation runs in the calling thread
+     */
+    @NotNull
+    String compute(@NotNull CharSequence text, @Nullable ProgressIndicator indicator);
+  }
+
   @NotNull
   public String executeCommand(@NotNull String command, @Nullable CharSequence input) throws IOException {
+    final CharSequence output = executeCommand(null, command, input);
+    return output != null ? output.toString() : "";
+  }
+
+  /**
+   * Runs the command under a modal progress. Its input is written and its output is read on two pooled threads, so a
+   * command that starts writing before it has read all of its input can't deadlock.
+   *
+   * @return The output of the command, null if it was cancelled
+   */
+  @Nullable
+  private CharSequence executeCommand(@Nullable Project project, @NotNull String command,
+                                      @Nullable final CharSequence input) throws IOException {
     if (logger.isDebugEnabled()) {
       logger.debug("command=" + command);
     }
 
     final Process process = Runtime.getRuntime().exec(command);
+    final ChunkedText output = new ChunkedText();
+    final AtomicLong written = new AtomicLong();
+    final Ref<IOException> error = Ref.create();
+
+    final boolean completed = ProgressManager.getInstance().runProcessWithProgressSynchronously(new Runnable() {
+      @Override
+      public void run() {
+        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        final Future<?> writer = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              writeInput(process, input, written);
+            }
+            catch (IOException e) {
+              // The command may exit without reading all of its input
+              logger.debug(e);
+            }
+          }
+        });
+        final Future<?> reader = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              readOutput(process, output);
+            }
+            catch (IOException e) {
+              error.set(e);
+            }
+          }
+        });
+
+        try {
+          if (indicator != null && input != null) {
+            indicator.setIndeterminate(false);
+          }
+          while (!process.waitFor(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (indicator != null) {
+              if (indicator.isCanceled()) {
+                process.destroy();
+                break;
+              }
+              if (input != null && input.length() > 0) {
+                indicator.setFraction((double)written.get() / input.length());
+              }
+            }
+          }
+          // A process started by the command may keep its output open after the command exits, so the streams are
+          // closed if the user cancels while they are still being read
+          boolean done = false;
+          try {
+            waitFor(writer);
+            waitFor(reader);
+            done = true;
+          }
+          finally {
+            if (!done) {
+              process.destroy();
+              writer.cancel(true);
+              reader.cancel(true);
+              closeStreams(process);
+            }
+          }
+        }
+        catch (InterruptedException e) {
+          process.destroy();
+          Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+          logger.error(e);
+        }
+      }
+    }, "Running " + command, true, project);
 
-    if (input != null) {
-      final BufferedWriter outputWriter = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-      copy(new CharSequenceReader(input), outputWriter);
-      outputWriter.close();
+    if (!completed) {
+      process.destroy();
+      return null;
+    }
+    if (!error.isNull()) {
+      throw error.get();
     }
-
-    final BufferedReader inputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-    final StringWriter writer = new StringWriter();
-    copy(inputReader, writer);
-    writer.close();
 
     lastCommand = command;
-    return writer.toString();
+    return output;
+  }
+
+  /**
+   * Waits for the task to finish, checking every now and then whether the progress is cancelled
+   */
+  private static void waitFor(@NotNull Future<?> future) throws InterruptedException, ExecutionException {
+    while (true) {
+      try {
+        future.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+        return;
+      }
+      catch (TimeoutException e) {
+        ProgressManager.checkCanceled();
+      }
+    }
+  }
+
+  private static void closeStreams(@NotNull Process process) {
+    closeQuietly(process.getOutputStream());
+    closeQuietly(process.getInputStream());
+    closeQuietly(process.getErrorStream());
+  }
+
+  private static void closeQuietly(@NotNull Closeable stream) {
+    try {
+      stream.close();
+    }
+    catch (IOException e) {
+      logger.debug(e);
+    }
   }
 
-  private void copy(@NotNull Reader from, @NotNull Writer to) throws IOException {
-    char[] buf = new char[2048];
-    int cnt;
-    while ((cnt = from.read(buf)) != -1) {
-      to.write(buf, 0, cnt);
+  private static void writeInput(@NotNull Process process, @Nullable CharSequence input,
+                                 @NotNull AtomicLong written) throws IOException {
+    final Writer writer = new OutputStreamWriter(process.getOutputStream());
+    try {
+      if (input != null) {
+        final char[] buf = new char[BUFFER_SIZE];
+        final int length = input.length();
+        for (int pos = 0; pos < length; ) {
+          final int count = Math.min(buf.length, length - pos);
+          for (int i = 0; i < count; i++) {
+            buf[i] = input.charAt(pos + i);
+          }
+          writer.write(buf, 0, count);
+          pos += count;
+          written.set(pos);
+        }
+      }
+    }
+    finally {
+      writer.close();
     }
   }
 
+  private static void readOutput(@NotNull Process process, @NotNull ChunkedText output) throws IOException {
+    final Reader reader = new InputStreamReader(process.getInputStream());
+    try {
+      final char[] buf = new char[BUFFER_SIZE];
+      int cnt;
+      while ((cnt = reader.read(buf)) != -1) {
+        output.append(buf, cnt);
+      }
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * The output of a command kept in fixed size chunks, so it never has to be copied while growing
+   */
+  private static class ChunkedText implements CharSequence {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    @NotNull private final List<char[]> myChunks = new ArrayList<char[]>();
+    private int myLength;
+
+    public void append(@NotNull char[] buf, int count) {
+      int pos = 0;
+      while (pos < count) {
+        final int offset = myLength & (CHUNK_SIZE - 1);
+        if (offset == 0) {
+          myChunks.add(new char[CHUNK_SIZE]);
+        }
+        final int n = Math.min(count - pos, CHUNK_SIZE - offset);
+        System.arraycopy(buf, pos, myChunks.get(myChunks.size() - 1), offset, n);
+        pos += n;
+        myLength += n;
+      }
+    }
+
+    @Override
+    public int length() {
+      return myLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return myChunks.get(index >>> CHUNK_BITS)[index & (CHUNK_SIZE - 1)];
+    }
+
+    @NotNull
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      final StringBuilder res = new StringBuilder(end - start);
+      for (int i = start; i < end; i++) {
+        res.append(charAt(i));
+      }
+      return res.toString();
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+      final StringBuilder res = new StringBuilder(myLength);
+      int remaining = myLength;
+      for (char[] chunk : myChunks) {
+        final int n = Math.min(remaining, CHUNK_SIZE);
+        res.append(chunk, 0, n);
+        remaining -= n;
+      }
+      return res.toString();
+    }
+  }
+
+  private static final int BUFFER_SIZE = 8192;
+  /**
+   * Computations on less text than this are fast enough to be run right away
+   */
+  private static final int BACKGROUND_COMPUTATION_LENGTH = 1 << 20;
+  private static final long PROGRESS_INTERVAL = 50;
+
   private String lastCommand;
 
   private static final Logger logger = Logger.getInstance(ProcessGroup.class.getName());
@@ -36,6 +36,7 @@ import com.maddyhome.idea.vim.command.CommandState;
 import com.maddyhome.idea.vim.command.SelectionType;
 import com.maddyhome.idea.vim.common.Register;
 import com.maddyhome.idea.vim.common.TextRange;
+import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.helper.EditorHelper;
 import com.maddyhome.idea.vim.helper.StringHelper;
 import com.maddyhome.idea.vim.option.ListOption;
@@ -43,6 +44,8 @@ import com.maddyhome.idea.vim.option.OptionChangeEvent;
 import com.maddyhome.idea.vim.option.OptionChangeListener;
 import com.maddyhome.idea.vim.option.Options;
 import com.maddyhome.idea.vim.ui.ClipboardHandler;
+import consulo.codeEditor.Caret;
+import consulo.codeEditor.CaretModel;
 import consulo.codeEditor.Editor;
 import consulo.logging.Logger;
 import consulo.ui.ex.action.AnAction;
@@ -165,6 +168,21 @@ public class RegisterGroup {
       text = text + '\n';
     }
 
+    // A command executed once for each caret keeps the text of every caret for the puts at that caret, while the
+    // shared registers only get the text of the primary caret
+    final CaretModel caretModel = editor.getCaretModel();
+    if (EditorData.isForEachCaret(editor)) {
+      storeCaretText(editor, register, type, text, isDelete);
+      if (caretModel.getCurrentCaret() != caretModel.getPrimaryCaret()) {
+        return true;
+      }
+    }
+    else if (".:/".indexOf(register) == -1) {
+      for (Caret caret : caretModel.getAllCarets()) {
+        EditorData.setCaretRegisters(caret, null);
+      }
+    }
+
     // If this is an uppercase register, we need to append the text to the corresponding lowercase register
     if (Character.isUpperCase(register)) {
       char lreg = Character.toLowerCase(register);
@@ -229,6 +247,36 @@ public class RegisterGroup {
     return true;
   }
 
+  private void storeCaretText(@NotNull Editor editor, char register, @NotNull SelectionType type, @NotNull String text,
+                              boolean isDelete) {
+    final Caret caret = editor.getCaretModel().getCurrentCaret();
+    Map<Character, Register> caretRegisters = EditorData.getCaretRegisters(caret);
+    if (caretRegisters == null) {
+      caretRegisters = new HashMap<Character, Register>();
+      EditorData.setCaretRegisters(caret, caretRegisters);
+    }
+
+    final char name = Character.toLowerCase(register);
+    final Register old = Character.isUpperCase(register) ? getRegister(editor, name) : null;
+    if (old != null) {
+      final Register appended = new Register(name, old.getType(), new ArrayList<KeyStroke>(old.getKeys()));
+      appended.addText(text);
+      caretRegisters.put(name, appended);
+    }
+    else {
+      caretRegisters.put(name, new Register(name, type, text));
+    }
+    if (register != defaultRegister) {
+      caretRegisters.put(defaultRegister, new Register(defaultRegister, type, text));
+    }
+    if (isDelete) {
+      caretRegisters.put('1', new Register('1', type, text));
+    }
+    else if (register == defaultRegister) {
+      caretRegisters.put('0', new Register('0', type, text));
+    }
+  }
+
   private boolean isSmallDeletionSpecialCase(Editor editor) {
     Command currentCommand = CommandState.getInstance(editor).getCommand();
     if (currentCommand != null) {
@@ -259,6 +307,30 @@ public class RegisterGroup {
     return getRegister(lastRegister);
   }
 
+  /**
+   * Get the last register selected by the user as seen from the current caret of the editor. While a command is
+   * executed once for each caret, this is the text stored at that caret if there is any.
+   *
+   * @return The register, null if no such register
+   */
+  @Nullable
+  public Register getLastRegister(@NotNull Editor editor) {
+    return getRegister(editor, lastRegister);
+  }
+
+  @Nullable
+  private Register getRegister(@NotNull Editor editor, char r) {
+    if (EditorData.isForEachCaret(editor)) {
+      final Map<Character, Register> caretRegisters =
+        EditorData.getCaretRegisters(editor.getCaretModel().getCurrentCaret());
+      final Register register = caretRegisters != null ? caretRegisters.get(Character.toLowerCase(r)) : null;
+      if (register != null) {
+        return register;
+      }
+    }
+    return getRegister(r);
+  }
+
   @Nullable
   public Register getPlaybackRegister(char r) {
     if (PLAYBACK_REGISTER.indexOf(r) != 0) {
@@ -171,7 +171,7 @@ public class SearchGroup {
       cmd.inc();
     }
     else {
-      do_all = Options.getInstance().isSet("gdefault");
+      do_all = Options.GDEFAULT.get();
       do_ask = false;
       do_error = true;
       //do_print = false;
@@ -453,8 +453,8 @@ public class SearchGroup {
   }
 
   private static boolean shouldIgnoreCase(@NotNull String pattern, boolean noSmartCase) {
-    boolean sc = !noSmartCase && Options.getInstance().isSet("smartcase");
-    boolean ic = Options.getInstance().isSet("ignorecase");
+    boolean sc = !noSmartCase && Options.SMARTCASE.get();
+    boolean ic = Options.IGNORECASE.get();
 
     return ic && !(sc && StringHelper.containsUpperCase(pattern));
   }
@@ -471,6 +471,23 @@ public class SearchGroup {
   }
 
   public int search(@NotNull Editor editor, @NotNull String command, int startOffset, int count, int flags) {
+    return search(editor, command, startOffset, count, flags, true);
+  }
+
+  /**
+   * Searches for a pattern address of an Ex range. The highlighting is updated only once after the whole range has
+   * been resolved, see {@link #updateSearchHighlight()}.
+   */
+  public int searchForRange(@NotNull Editor editor, @NotNull String command, int startOffset, int flags) {
+    return search(editor, command, startOffset, 1, flags, false);
+  }
+
+  public void updateSearchHighlight() {
+    searchHighlight(false);
+  }
+
+  private int search(@NotNull Editor editor, @NotNull String command, int startOffset, int count, int flags,
+                     boolean highlight) {
     int dir = 1;
     char type = '/';
     String pattern = lastSearch;
@@ -518,7 +535,9 @@ public class SearchGroup {
       logger.debug("lastDir=" + lastDir);
     }
 
-    searchHighlight(false);
+    if (highlight) {
+      searchHighlight(false);
+    }
 
     return findItOffset(editor, startOffset, count, lastDir, false);
   }
@@ -565,7 +584,7 @@ public class SearchGroup {
   }
 
   private void searchHighlight(boolean noSmartCase) {
-    showSearchHighlight = Options.getInstance().isSet("hlsearch");
+    showSearchHighlight = Options.HLSEARCH.get();
     highlightSearch(noSmartCase);
   }
 
@@ -626,7 +645,7 @@ public class SearchGroup {
         return d2 - d1;
       }
     });
-    if (!Options.getInstance().isSet("wrapscan")) {
+    if (!Options.WRAPSCAN.get()) {
       final int start = max.getStartOffset();
       if (forwards && start < offset || start >= offset) {
         return null;
@@ -694,6 +713,53 @@ public class SearchGroup {
     return results;
   }
 
+  /**
+   * Finds the lines of a range that contain a match for the pattern. This is the marking pass of :global and
+   * :vglobal.
+   *
+   * @param editor    The editor to search in
+   * @param pattern   The pattern to search for
+   * @param startLine The first line to check
+   * @param endLine   The last line to check
+   * @param invert    If true the lines without a match are returned instead
+   * @return The lines in ascending order, null if the pattern is invalid
+   */
+  @Nullable
+  public int[] findMatchingLines(@NotNull Editor editor, @NotNull String pattern, int startLine, int endLine,
+                                 boolean invert) {
+    final RegExp.regmmatch_T regMatch = new RegExp.regmmatch_T();
+    final RegExp regExp = new RegExp();
+    regMatch.regprog = regExp.vim_regcomp(pattern, 1);
+    if (regMatch.regprog == null) {
+      return null;
+    }
+    regMatch.rmm_ic = shouldIgnoreCase(pattern, false);
+
+    lastSearch = pattern;
+    setLastPattern(editor, pattern);
+
+    final int lineCount = EditorHelper.getLineCount(editor);
+    final boolean[] matched = new boolean[endLine - startLine + 1];
+    for (int line = startLine; line <= endLine; line++) {
+      matched[line - startLine] = regExp.vim_regexec_multi(regMatch, editor, lineCount, line, 0) > 0;
+    }
+
+    int count = 0;
+    for (boolean m : matched) {
+      if (m != invert) {
+        count++;
+      }
+    }
+    final int[] lines = new int[count];
+    for (int i = 0, j = 0; i < matched.length; i++) {
+      if (matched[i] != invert) {
+        lines[j++] = startLine + i;
+      }
+    }
+
+    return lines;
+  }
+
   private static void highlightSearchLines(@NotNull Editor editor, @NotNull String pattern, int startLine, int endLine,
                                            boolean ignoreCase) {
     final TextAttributes color = editor.getColorsScheme().getAttributes(EditorColors.SEARCH_RESULT_ATTRIBUTES);
@@ -713,7 +779,7 @@ public class SearchGroup {
 
   private int findItOffset(@NotNull Editor editor, int startOffset, int count, int dir,
                            boolean noSmartCase) {
-    boolean wrap = Options.getInstance().isSet("wrapscan");
+    boolean wrap = Options.WRAPSCAN.get();
     TextRange range = findIt(editor, startOffset, count, dir, noSmartCase, wrap, true, true);
     if (range == null) {
       return -1;
@@ -804,6 +870,24 @@ public class SearchGroup {
     }
   }
 
+  /**
+   * Compiles the last search pattern. Repeated searches such as "n" or pattern addresses in Ex ranges usually search
+   * for the same pattern so the program compiled last time is reused.
+   */
+  @Nullable
+  private RegExp.regprog_T compileLastSearch() {
+    if (lastSearch == null) {
+      return null;
+    }
+    if (!lastSearch.equals(compiledPattern)) {
+      compiledRegExp = new RegExp();
+      compiledProgram = compiledRegExp.vim_regcomp(lastSearch, 1);
+      // A bad pattern is compiled again next time to report the error again
+      compiledPattern = compiledProgram != null ? lastSearch : null;
+    }
+    return compiledProgram;
+  }
+
   @Nullable
   private TextRange findIt(@NotNull Editor editor, int startOffset, int count, int dir,
                            boolean noSmartCase, boolean wrap, boolean showMessages, boolean wholeFile) {
@@ -824,9 +908,9 @@ public class SearchGroup {
     RegExp sp;
     RegExp.regmmatch_T regmatch = new RegExp.regmmatch_T();
     regmatch.rmm_ic = shouldIgnoreCase(lastSearch, noSmartCase);
-    sp = new RegExp();
-    regmatch.regprog = sp.vim_regcomp(lastSearch, 1);
-    if (regmatch == null) {
+    regmatch.regprog = compileLastSearch();
+    sp = compiledRegExp;
+    if (regmatch.regprog == null || sp == null) {
       if (logger.isDebugEnabled()) logger.debug("bad pattern: " + lastSearch);
       return res;
     }
@@ -1203,6 +1287,16 @@ public class SearchGroup {
 
   public static class DocumentSearchListener extends DocumentAdapter {
     public void documentChanged(@NotNull DocumentEvent event) {
+      final long start = LatencyStats.start();
+      try {
+        doDocumentChanged(event);
+      }
+      finally {
+        LatencyStats.record(LatencyStats.Phase.SEARCH_LISTENER, start);
+      }
+    }
+
+    private void doDocumentChanged(@NotNull DocumentEvent event) {
       if (!VimPlugin.isEnabled()) {
         return;
       }
@@ -1259,6 +1353,9 @@ public class SearchGroup {
   @Nullable private String lastReplace;
   @Nullable private String lastOffset;
   private int lastDir;
+  @Nullable private String compiledPattern;
+  @Nullable private RegExp compiledRegExp;
+  @Nullable private RegExp.regprog_T compiledProgram;
   private boolean showSearchHighlight = Options.getInstance().isSet("hlsearch");
 
   private boolean do_all = false; /* do multiple substitutions per line */
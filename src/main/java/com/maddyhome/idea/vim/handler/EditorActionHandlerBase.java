@@ -21,6 +21,9 @@ package com.maddyhome.idea.vim.handler;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.Command;
 import com.maddyhome.idea.vim.command.CommandState;
+import com.maddyhome.idea.vim.helper.EditorData;
+import consulo.codeEditor.Caret;
+import consulo.codeEditor.CaretAction;
 import consulo.codeEditor.Editor;
 import consulo.codeEditor.action.EditorActionHandler;
 import consulo.dataContext.DataContext;
@@ -42,7 +45,14 @@ public abstract class EditorActionHandlerBase extends EditorActionHandler {
     final CommandState state = CommandState.getInstance(editor);
     final Command cmd = state.getCommand();
 
-    if (cmd == null || !execute(editor, context, cmd)) {
+    if (cmd == null) {
+      VimPlugin.indicateError();
+      return;
+    }
+
+    final boolean worked = isForEachCaret(editor, state, cmd) ? executeForEachCaret(editor, context, cmd)
+                                                              : execute(editor, context, cmd);
+    if (!worked) {
       VimPlugin.indicateError();
     }
   }
@@ -53,5 +63,53 @@ public abstract class EditorActionHandlerBase extends EditorActionHandler {
 
   protected abstract boolean execute(@NotNull Editor editor, @NotNull DataContext context, @NotNull Command cmd);
 
+  /**
+   * Motions, deletes, yanks and puts are executed once for every caret. Each caret keeps the text it deleted or
+   * yanked in its own registers, see {@link com.maddyhome.idea.vim.group.RegisterGroup#getLastRegister(Editor)}.
+   * The jump list is shared by all the carets, so the motions that save a jump are only executed for the primary
+   * caret, as are the changes and the commands that leave normal mode.
+   */
+  private static boolean isForEachCaret(@NotNull Editor editor, @NotNull CommandState state, @NotNull Command cmd) {
+    if (editor.getCaretModel().getCaretCount() < 2 || state.getMode() != CommandState.Mode.COMMAND ||
+        (cmd.getFlags() & (Command.FLAG_MULTIKEY_UNDO | Command.FLAG_SAVE_JUMP)) != 0) {
+      return false;
+    }
+    switch (cmd.getType()) {
+      case MOTION:
+      case DELETE:
+      case COPY:
+      case PASTE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private boolean executeForEachCaret(@NotNull final Editor editor, @NotNull final DataContext context,
+                                      @NotNull final Command cmd) {
+    final CommandState state = CommandState.getInstance(editor);
+    final boolean[] worked = {true};
+    EditorData.setForEachCaret(editor, true);
+    try {
+      // The carets are visited from the end of the document, so the edits made at one caret never shift the offsets
+      // of the carets still to be visited and all the edits end up in the same command and write action
+      editor.getCaretModel().runForEachCaret(new CaretAction() {
+        @Override
+        public void perform(Caret caret) {
+          if (state.getMode() != CommandState.Mode.COMMAND) {
+            return;
+          }
+          if (!execute(editor, context, cmd)) {
+            worked[0] = false;
+          }
+        }
+      }, true);
+    }
+    finally {
+      EditorData.setForEachCaret(editor, false);
+    }
+    return worked[0];
+  }
+
   private static final Logger logger = Logger.getInstance(EditorActionHandlerBase.class.getName());
 }
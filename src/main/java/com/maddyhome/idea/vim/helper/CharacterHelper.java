@@ -18,7 +18,14 @@
 
 package com.maddyhome.idea.vim.helper;
 
+import com.maddyhome.idea.vim.option.ListOption;
+import com.maddyhome.idea.vim.option.OptionChangeEvent;
+import com.maddyhome.idea.vim.option.OptionChangeListener;
+import com.maddyhome.idea.vim.option.Options;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
 
 /**
  * This helper class is used when working with various character level operations
@@ -51,29 +58,154 @@ public class CharacterHelper {
    */
   @NotNull
   public static CharacterType charType(char ch, boolean punctuationAsLetters) {
-    final Character.UnicodeBlock block = Character.UnicodeBlock.of(ch);
-    if (Character.isWhitespace(ch)) {
-      return CharacterType.WHITESPACE;
+    final byte type = FIXED_TYPES[ch];
+    if (type != NOT_FIXED) {
+      return TYPES[type];
     }
-    else if (block == Character.UnicodeBlock.HIRAGANA) {
-      return CharacterType.HIRAGANA;
+    else if (punctuationAsLetters || isKeyword(ch)) {
+      return CharacterType.LETTER_OR_DIGIT;
     }
-    else if (block == Character.UnicodeBlock.KATAKANA) {
-      return CharacterType.KATAKANA;
+    else {
+      return CharacterType.PUNCTUATION;
     }
-    else if (isHalfWidthKatakanaLetter(ch)) {
-      return CharacterType.HALF_WIDTH_KATAKANA;
+  }
+
+  /**
+   * Checks if the character is a keyword character according to the <code>iskeyword</code> option. The option only
+   * covers characters up to 255, any other letter, digit or underscore is always a keyword character.
+   *
+   * @param ch The character to check
+   * @return True if the character is part of a keyword, false if not
+   */
+  public static boolean isKeyword(char ch) {
+    long[] bits = ourKeywordBits;
+    if (bits == null) {
+      bits = initKeywordBits();
     }
-    else if (punctuationAsLetters || Character.isLetterOrDigit(ch) || ch == '_') {
-      return CharacterType.LETTER_OR_DIGIT;
+    return (bits[ch >>> 6] & (1L << ch)) != 0;
+  }
+
+  @NotNull
+  private static synchronized long[] initKeywordBits() {
+    if (ourKeywordBits == null) {
+      final ListOption option = Options.getInstance().getListOption(Options.ISKEYWORD);
+      if (option != null) {
+        option.addOptionChangeListener(new OptionChangeListener() {
+          public void valueChange(@NotNull OptionChangeEvent event) {
+            ourKeywordBits = buildKeywordBits(((ListOption)event.getOption()).values());
+          }
+        });
+      }
+      ourKeywordBits = buildKeywordBits(option != null ? option.values() : null);
+    }
+    return ourKeywordBits;
+  }
+
+  /**
+   * Builds the keyword bitset from the parts of the <code>iskeyword</code> option. Each part is either
+   * <code>@</code> for all letters, a character or a decimal character code, or a range of those separated by
+   * <code>-</code>. A part starting with <code>^</code> excludes the characters instead of adding them.
+   */
+  @NotNull
+  private static long[] buildKeywordBits(@Nullable List<String> parts) {
+    final long[] bits = new long[TABLE_SIZE >>> 6];
+    for (int ch = 256; ch < TABLE_SIZE; ch++) {
+      if (Character.isLetterOrDigit(ch) || ch == '_') {
+        bits[ch >>> 6] |= 1L << ch;
+      }
+    }
+    if (parts == null) {
+      return bits;
+    }
+
+    for (String part : parts) {
+      boolean exclude = false;
+      if (part.length() > 1 && part.charAt(0) == '^') {
+        exclude = true;
+        part = part.substring(1);
+      }
+
+      int from;
+      int to;
+      if (part.equals("@")) {
+        for (int ch = 0; ch < 256; ch++) {
+          if (Character.isLetter(ch)) {
+            setBit(bits, ch, exclude);
+          }
+        }
+        continue;
+      }
+      final int dash = part.indexOf('-', 1);
+      if (dash > 0 && dash < part.length() - 1) {
+        from = parseKeywordChar(part.substring(0, dash));
+        to = parseKeywordChar(part.substring(dash + 1));
+      }
+      else {
+        from = to = parseKeywordChar(part);
+      }
+      if (from < 0 || to < 0) {
+        continue;
+      }
+      for (int ch = from; ch <= to && ch < 256; ch++) {
+        setBit(bits, ch, exclude);
+      }
+    }
+
+    return bits;
+  }
+
+  private static int parseKeywordChar(@NotNull String text) {
+    if (text.length() == 1 && !Character.isDigit(text.charAt(0))) {
+      return text.charAt(0);
+    }
+    try {
+      return Integer.parseInt(text);
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void setBit(@NotNull long[] bits, int ch, boolean clear) {
+    if (clear) {
+      bits[ch >>> 6] &= ~(1L << ch);
     }
     else {
-      return CharacterType.PUNCTUATION;
+      bits[ch >>> 6] |= 1L << ch;
     }
   }
 
-  private static boolean isHalfWidthKatakanaLetter(char ch) {
-    return ch >= '\uFF66' && ch <= '\uFF9F';
+  /**
+   * Builds the table of character types which don't depend on any option. All other characters are marked with
+   * <code>NOT_FIXED</code> and resolved against the keyword table.
+   */
+  @NotNull
+  private static byte[] buildFixedTypes() {
+    final byte[] types = new byte[TABLE_SIZE];
+    for (int i = 0; i < TABLE_SIZE; i++) {
+      final char ch = (char)i;
+      final CharacterType type;
+      if (Character.isWhitespace(ch)) {
+        type = CharacterType.WHITESPACE;
+      }
+      else {
+        final Character.UnicodeBlock block = Character.UnicodeBlock.of(ch);
+        if (block == Character.UnicodeBlock.HIRAGANA) {
+          type = CharacterType.HIRAGANA;
+        }
+        else if (block == Character.UnicodeBlock.KATAKANA) {
+          type = CharacterType.KATAKANA;
+        }
+        else if (isHalfWidthKatakanaLetter(ch)) {
+          type = CharacterType.HALF_WIDTH_KATAKANA;
+        }
+        else {
+          type = null;
+        }
+      }
+      types[i] = type != null ? (byte)type.ordinal() : NOT_FIXED;
+    }
+    return types;
   }
 
   /**
@@ -103,4 +235,11 @@ public class CharacterHelper {
 
     return ch;
   }
+
+  private static final int TABLE_SIZE = Character.MAX_VALUE + 1;
+  private static final byte NOT_FIXED = -1;
+  @NotNull private static final CharacterType[] TYPES = CharacterType.values();
+  @NotNull private static final byte[] FIXED_TYPES = buildFixedTypes();
+
+  @Nullable private static volatile long[] ourKeywordBits = null;
 }
@@ -18,6 +18,7 @@
 
 package com.maddyhome.idea.vim.helper;
 
+import consulo.codeEditor.Caret;
 import consulo.codeEditor.Editor;
 import consulo.codeEditor.markup.RangeHighlighter;
 import consulo.document.FileDocumentManager;
@@ -27,6 +28,7 @@ import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.CommandState;
 import com.maddyhome.idea.vim.command.SelectionType;
 import com.maddyhome.idea.vim.command.VisualChange;
+import com.maddyhome.idea.vim.common.Register;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.ExOutputModel;
 import com.maddyhome.idea.vim.group.MotionGroup;
@@ -38,6 +40,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * This class is used to manipulate editor specific data. Each editor has a user defined map associated with it.
@@ -71,15 +74,17 @@ public class EditorData {
   }
 
   /**
-   * This gets the last column the cursor was in for the editor.
+   * This gets the last column the current caret was in. Every caret keeps its own last column, so the carets of
+   * a command executed once for each caret don't share it.
    *
    * @param editor The editor to get the last column from
    * @return Returns the last column as set by {@link #setLastColumn} or the current cursor column
    */
   public static int getLastColumn(@NotNull Editor editor) {
-    Integer col = editor.getUserData(LAST_COLUMN);
+    final Caret caret = editor.getCaretModel().getCurrentCaret();
+    Integer col = caret.getUserData(LAST_COLUMN);
     if (col == null) {
-      return editor.getCaretModel().getVisualPosition().column;
+      return caret.getVisualPosition().column;
     }
     else {
       return col;
@@ -87,7 +92,7 @@ public class EditorData {
   }
 
   /**
-   * Sets the last column for this editor
+   * Sets the last column for the current caret of this editor
    *
    * @param col    The column
    * @param editor The editor
@@ -96,7 +101,7 @@ public class EditorData {
     boolean previousWasDollar = getLastColumn(editor) >= MotionGroup.LAST_COLUMN;
     boolean currentIsDollar = col >= MotionGroup.LAST_COLUMN;
 
-    editor.putUserData(LAST_COLUMN, col);
+    editor.getCaretModel().getCurrentCaret().putUserData(LAST_COLUMN, col);
     int t = getLastColumn(editor);
     if (logger.isDebugEnabled()) logger.debug("setLastColumn(" + col + ") is now " + t);
 
@@ -212,6 +217,38 @@ public class EditorData {
     editor.putUserData(LINE_NUMBERS_SHOWN, value);
   }
 
+  /**
+   * True while a command is being executed once for each caret of the editor
+   */
+  public static boolean isForEachCaret(@NotNull Editor editor) {
+    return editor.getUserData(FOR_EACH_CARET) == Boolean.TRUE;
+  }
+
+  public static void setForEachCaret(@NotNull Editor editor, boolean value) {
+    editor.putUserData(FOR_EACH_CARET, value);
+  }
+
+  /**
+   * The registers written at this caret by the commands executed once for each caret
+   */
+  @Nullable
+  public static Map<Character, Register> getCaretRegisters(@NotNull Caret caret) {
+    return caret.getUserData(CARET_REGISTERS);
+  }
+
+  public static void setCaretRegisters(@NotNull Caret caret, @Nullable Map<Character, Register> registers) {
+    caret.putUserData(CARET_REGISTERS, registers);
+  }
+
+  @Nullable
+  public static MotionGroup.BlockCarets getBlockCarets(@NotNull Editor editor) {
+    return editor.getUserData(BLOCK_CARETS);
+  }
+
+  public static void setBlockCarets(@NotNull Editor editor, @Nullable MotionGroup.BlockCarets carets) {
+    editor.putUserData(BLOCK_CARETS, carets);
+  }
+
   public static boolean isConsoleOutput(@NotNull Editor editor) {
     Object res = editor.getUserData(CONSOLE_VIEW_IN_EDITOR_VIEW);
     logger.debug("isConsoleOutput for editor " + editor + " - " + res);
@@ -265,6 +302,10 @@ public class EditorData {
   private static final Key<Boolean> MOTION_GROUP = new Key<Boolean>("motionGroup");
   public static final Key<Boolean> EDITOR_GROUP = new Key<Boolean>("editorGroup");
   public static final Key<Boolean> LINE_NUMBERS_SHOWN = new Key<Boolean>("lineNumbersShown");
+  private static final Key<Boolean> FOR_EACH_CARET = new Key<Boolean>("IdeaVim.forEachCaret");
+  private static final Key<Map<Character, Register>> CARET_REGISTERS =
+    new Key<Map<Character, Register>>("IdeaVim.caretRegisters");
+  private static final Key<MotionGroup.BlockCarets> BLOCK_CARETS = new Key<MotionGroup.BlockCarets>("IdeaVim.blockCarets");
   private static final Key<ExOutputPanel> MORE_PANEL = new Key<ExOutputPanel>("IdeaVim.morePanel");
   private static final Key<ExOutputModel> EX_OUTPUT_MODEL = new Key<ExOutputModel>("IdeaVim.exOutputModel");
   private static final Key<TestInputModel> TEST_INPUT_MODEL = new Key<TestInputModel>("IdeaVim.testInputModel");
@@ -0,0 +1,209 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.helper;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in latency histograms for the phases of key handling, shown by :vimstats. While they are disabled the cost of
+ * an instrumented phase is a single volatile read. They are enabled with :vimstats on or from the start with the
+ * ideavim.stats system property.
+ * <p/>
+ * The durations are kept in nanoseconds in log-linear buckets like the ones of HdrHistogram: the values below 32 have
+ * a bucket each, the larger ones have 16 buckets per power of two, so every value is recorded within about 6%.
+ */
+public class LatencyStats {
+  public enum Phase {
+    HANDLE_KEY("key"),
+    KEY_MAPPING("mapping"),
+    EXECUTE_COMMAND("command"),
+    WRITE_ACQUIRE("lock"),
+    ACTION("action"),
+    SEARCH_LISTENER("hlsearch"),
+    MARK_LISTENER("marks");
+
+    Phase(@NotNull String name) {
+      myName = name;
+    }
+
+    @NotNull
+    public String getName() {
+      return myName;
+    }
+
+    @NotNull private final String myName;
+  }
+
+  private LatencyStats() {}
+
+  public static boolean isEnabled() {
+    return ourEnabled;
+  }
+
+  public static void setEnabled(boolean enabled) {
+    ourEnabled = enabled;
+  }
+
+  /**
+   * @return The start time of a phase to pass to {@link #record(Phase, long)}, 0 if the statistics are disabled
+   */
+  public static long start() {
+    return ourEnabled ? System.nanoTime() : 0;
+  }
+
+  public static void record(@NotNull Phase phase, long start) {
+    if (start != 0) {
+      ourHistograms[phase.ordinal()].record(System.nanoTime() - start);
+    }
+  }
+
+  public static void clear() {
+    for (Histogram histogram : ourHistograms) {
+      histogram.clear();
+    }
+  }
+
+  /**
+   * @return One line per phase with its count and the percentiles of its durations in microseconds
+   */
+  @NotNull
+  public static List<String> report() {
+    final List<String> lines = new ArrayList<String>();
+    lines.add(String.format("%-10s %10s %10s %10s %10s %10s %10s %10s", "phase", "count", "mean", "p50", "p90", "p99",
+                            "p99.9", "max"));
+    for (Phase phase : Phase.values()) {
+      lines.add(ourHistograms[phase.ordinal()].report(phase.getName()));
+    }
+    return lines;
+  }
+
+  /**
+   * Writes the report followed by the non-empty buckets of every phase as "phase lower-bound-ns count" lines
+   */
+  public static void write(@NotNull Writer writer) throws IOException {
+    for (String line : report()) {
+      writer.write(line);
+      writer.write('\n');
+    }
+    for (Phase phase : Phase.values()) {
+      ourHistograms[phase.ordinal()].writeBuckets(phase.getName(), writer);
+    }
+  }
+
+  private static class Histogram {
+    public synchronized void record(long value) {
+      if (value < 0) {
+        value = 0;
+      }
+      myCounts[index(value)]++;
+      myTotal++;
+      mySum += value;
+      if (value > myMax) {
+        myMax = value;
+      }
+    }
+
+    public synchronized void clear() {
+      for (int i = 0; i < myCounts.length; i++) {
+        myCounts[i] = 0;
+      }
+      myTotal = 0;
+      mySum = 0;
+      myMax = 0;
+    }
+
+    @NotNull
+    public synchronized String report(@NotNull String name) {
+      final double mean = myTotal == 0 ? 0 : (double)mySum / myTotal;
+      return String.format("%-10s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f", name, myTotal, micros(mean),
+                           micros(percentile(0.5)), micros(percentile(0.9)), micros(percentile(0.99)),
+                           micros(percentile(0.999)), micros(myMax));
+    }
+
+    public synchronized void writeBuckets(@NotNull String name, @NotNull Writer writer) throws IOException {
+      for (int i = 0; i < myCounts.length; i++) {
+        if (myCounts[i] != 0) {
+          writer.write(name + " " + lowerBound(i) + " " + myCounts[i] + "\n");
+        }
+      }
+    }
+
+    /**
+     * @return The highest value recorded in the bucket holding the given fraction of the values
+     */
+    private long percentile(double fraction) {
+      if (myTotal == 0) {
+        return 0;
+      }
+      final long target = Math.max(1, (long)Math.ceil(fraction * myTotal));
+      long seen = 0;
+      for (int i = 0; i < myCounts.length; i++) {
+        seen += myCounts[i];
+        if (seen >= target) {
+          return i + 1 < myCounts.length ? Math.min(lowerBound(i + 1) - 1, myMax) : myMax;
+        }
+      }
+      return myMax;
+    }
+
+    private static int index(long value) {
+      if (value < SUB_BUCKETS) {
+        return (int)value;
+      }
+      final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+      return (shift + 1) * HALF_SUB_BUCKETS + (int)(value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    private static long lowerBound(int index) {
+      if (index < SUB_BUCKETS) {
+        return index;
+      }
+      final int shift = index / HALF_SUB_BUCKETS - 1;
+      return (long)(index % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+    }
+
+    private static double micros(double nanos) {
+      return nanos / 1000;
+    }
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+    @NotNull private final long[] myCounts = new long[BUCKETS];
+    private long myTotal = 0;
+    private long mySum = 0;
+    private long myMax = 0;
+  }
+
+  private static volatile boolean ourEnabled = Boolean.getBoolean("ideavim.stats");
+  @NotNull private static final Histogram[] ourHistograms = new Histogram[Phase.values().length];
+
+  static {
+    for (int i = 0; i < ourHistograms.length; i++) {
+      ourHistograms[i] = new Histogram();
+    }
+  }
+}
@@ -0,0 +1,480 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.helper;
+
+import com.maddyhome.idea.vim.option.Options;
+import com.maddyhome.idea.vim.regexp.RegExp;
+import consulo.application.progress.ProgressIndicator;
+import consulo.codeEditor.Editor;
+import consulo.document.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Sorts a range of lines the way Vim's :sort does.
+ * <p/>
+ * The sort key of every line is computed once before sorting: the part of the line selected by the pattern, converted
+ * to upper case or parsed as a number depending on the flags. Lines are then sorted by index, so the text itself is
+ * only copied once, when the result is built.
+ */
+public class LineSorter {
+  public static final int SORT_REVERSE = 1;
+  public static final int SORT_IGNORE_CASE = 1 << 1;
+  public static final int SORT_NUMBER = 1 << 2;
+  public static final int SORT_FLOAT = 1 << 3;
+  public static final int SORT_HEX = 1 << 4;
+  public static final int SORT_OCTAL = 1 << 5;
+  public static final int SORT_BINARY = 1 << 6;
+  public static final int SORT_UNIQUE = 1 << 7;
+  public static final int SORT_PATTERN_MATCH = 1 << 8;
+
+  private static final int SORT_INTEGER = SORT_NUMBER | SORT_HEX | SORT_OCTAL | SORT_BINARY;
+
+  /**
+   * Ranges with at least this many lines are sorted on all cores
+   */
+  private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+  private final int myFlags;
+  @Nullable private final String myPattern;
+
+  /**
+   * The lines of a range and their sort keys, as offsets into the document text
+   */
+  public static class Lines {
+    @NotNull private final int[] myLineStarts;
+    @NotNull private final int[] myLineEnds;
+    @NotNull private final int[] myKeyStarts;
+    @NotNull private final int[] myKeyEnds;
+
+    private Lines(@NotNull int[] lineStarts, @NotNull int[] lineEnds, @NotNull int[] keyStarts,
+                  @NotNull int[] keyEnds) {
+      myLineStarts = lineStarts;
+      myLineEnds = lineEnds;
+      myKeyStarts = keyStarts;
+      myKeyEnds = keyEnds;
+    }
+  }
+
+  /**
+   * @param flags   A combination of the <code>SORT_*</code> flags
+   * @param pattern The pattern selecting the sort key of every line, null to sort on whole lines
+   */
+  public LineSorter(int flags, @Nullable String pattern) {
+    myFlags = flags;
+    myPattern = pattern;
+  }
+
+  /**
+   * Finds the lines in the given range and their sort keys. Matching the pattern needs the editor, everything else
+   * is done by {@link #sort(Lines, CharSequence, ProgressIndicator)} on the text alone.
+   *
+   * @return The lines to sort, null if the pattern is invalid
+   */
+  @Nullable
+  public Lines prepare(@NotNull Editor editor, int startLine, int endLine) {
+    final Document document = editor.getDocument();
+    final int count = endLine - startLine + 1;
+
+    final int[] lineStarts = new int[count];
+    final int[] lineEnds = new int[count];
+    for (int i = 0; i < count; i++) {
+      lineStarts[i] = document.getLineStartOffset(startLine + i);
+      lineEnds[i] = document.getLineEndOffset(startLine + i);
+    }
+
+    final int[] keyStarts = lineStarts.clone();
+    final int[] keyEnds = lineEnds.clone();
+    if (myPattern != null && !findKeys(editor, startLine, lineStarts, lineEnds, keyStarts, keyEnds)) {
+      return null;
+    }
+
+    return new Lines(lineStarts, lineEnds, keyStarts, keyEnds);
+  }
+
+  /**
+   * Sorts the lines found by {@link #prepare(Editor, int, int)}. This doesn't touch the editor, so it may run in a
+   * background thread on a snapshot of the document text.
+   *
+   * @param lines     The lines to sort
+   * @param chars     The text of the document the lines were prepared for
+   * @param indicator The progress of a background sort, the sort stops as soon as it is cancelled
+   * @return The sorted text of the lines without the trailing newline
+   */
+  @NotNull
+  public String sort(@NotNull Lines lines, @NotNull CharSequence chars, @Nullable ProgressIndicator indicator) {
+    final int[] lineStarts = lines.myLineStarts;
+    final int[] lineEnds = lines.myLineEnds;
+    final int count = lineStarts.length;
+
+    // With whole line string keys, lines that u would drop are exactly the lines with equal keys, so they can be
+    // filtered out by hashing before sorting. Numeric and pattern keys may separate identical lines, so there u
+    // compares neighbours after sorting as Vim does.
+    final boolean hashUnique = (myFlags & SORT_UNIQUE) != 0 && myPattern == null &&
+                               (myFlags & (SORT_INTEGER | SORT_FLOAT)) == 0;
+    Comparator<Integer> comparator = createComparator(chars, lines.myKeyStarts, lines.myKeyEnds);
+    if (indicator != null) {
+      comparator = cancellable(comparator, indicator);
+      indicator.checkCanceled();
+    }
+    final Integer[] order = hashUnique ? findUniqueLines(chars, lineStarts, lineEnds) : new Integer[count];
+    if (!hashUnique) {
+      for (int i = 0; i < count; i++) {
+        order[i] = i;
+      }
+    }
+    if (count >= PARALLEL_SORT_THRESHOLD) {
+      Arrays.parallelSort(order, comparator);
+    }
+    else {
+      Arrays.sort(order, comparator);
+    }
+    if (indicator != null) {
+      indicator.checkCanceled();
+    }
+
+    return join(chars, order, lineStarts, lineEnds, !hashUnique && (myFlags & SORT_UNIQUE) != 0);
+  }
+
+  /**
+   * Makes the comparator throw as soon as the sort is cancelled, since a sort can't be stopped in any other way
+   */
+  @NotNull
+  private static Comparator<Integer> cancellable(@NotNull final Comparator<Integer> comparator,
+                                                 @NotNull final ProgressIndicator indicator) {
+    return new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        indicator.checkCanceled();
+        return comparator.compare(o1, o2);
+      }
+    };
+  }
+
+  /**
+   * Finds the lines which are kept by <code>u</code> using an open addressing hash table of line indexes, so no
+   * string is created per line. Of equal lines the first one is kept, or the last one when sorting in reverse, as
+   * that one comes first in the output.
+   *
+   * @return The indexes of the kept lines
+   */
+  @NotNull
+  private Integer[] findUniqueLines(@NotNull CharSequence chars, @NotNull int[] lineStarts, @NotNull int[] lineEnds) {
+    final boolean reverse = (myFlags & SORT_REVERSE) != 0;
+    final boolean ignoreCase = (myFlags & SORT_IGNORE_CASE) != 0;
+    final int count = lineStarts.length;
+    final int[] table = new int[Integer.highestOneBit(count * 2 - 1) << 1];
+    final int mask = table.length - 1;
+    final int[] kept = new int[count];
+    int keptCount = 0;
+
+    for (int i = 0; i < count; i++) {
+      final int line = reverse ? count - i - 1 : i;
+      int slot = hashRegion(chars, lineStarts[line], lineEnds[line], ignoreCase) & mask;
+      boolean duplicate = false;
+      while (table[slot] != 0) {
+        final int other = table[slot] - 1;
+        if (compareRegions(chars, lineStarts[line], lineEnds[line], lineStarts[other], lineEnds[other],
+                           ignoreCase) == 0) {
+          duplicate = true;
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (!duplicate) {
+        table[slot] = line + 1;
+        kept[keptCount++] = line;
+      }
+    }
+
+    final Integer[] res = new Integer[keptCount];
+    for (int i = 0; i < keptCount; i++) {
+      res[i] = kept[i];
+    }
+
+    return res;
+  }
+
+  private static int hashRegion(@NotNull CharSequence chars, int start, int end, boolean ignoreCase) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      final char c = chars.charAt(i);
+      hash = 31 * hash + (ignoreCase ? Character.toUpperCase(c) : c);
+    }
+
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Narrows the key of every line to the text after the pattern match, or to the match itself with the
+   * <code>r</code> flag. Lines without a match get an empty key and so sort before all others.
+   */
+  private boolean findKeys(@NotNull Editor editor, int startLine, @NotNull int[] lineStarts, @NotNull int[] lineEnds,
+                           @NotNull int[] keyStarts, @NotNull int[] keyEnds) {
+    final RegExp regExp = new RegExp();
+    final RegExp.regmmatch_T regMatch = new RegExp.regmmatch_T();
+    regMatch.regprog = regExp.vim_regcomp(myPattern, 1);
+    if (regMatch.regprog == null) {
+      return false;
+    }
+    regMatch.rmm_ic = Options.IGNORECASE.get();
+
+    final int lineCount = EditorHelper.getLineCount(editor);
+    final boolean useMatch = (myFlags & SORT_PATTERN_MATCH) != 0;
+    for (int i = 0; i < lineStarts.length; i++) {
+      final int lineLength = lineEnds[i] - lineStarts[i];
+      if (regExp.vim_regexec_multi(regMatch, editor, lineCount, startLine + i, 0) > 0) {
+        final int matchEnd = regMatch.endpos[0].lnum == 0 ? Math.min(regMatch.endpos[0].col, lineLength) : lineLength;
+        if (useMatch) {
+          keyStarts[i] = lineStarts[i] + regMatch.startpos[0].col;
+          keyEnds[i] = lineStarts[i] + matchEnd;
+        }
+        else {
+          keyStarts[i] = lineStarts[i] + matchEnd;
+        }
+      }
+      else {
+        keyEnds[i] = keyStarts[i];
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Creates the comparator of line indexes. Lines with equal keys keep their original order.
+   */
+  @NotNull
+  private Comparator<Integer> createComparator(@NotNull final CharSequence chars, @NotNull final int[] keyStarts,
+                                               @NotNull final int[] keyEnds) {
+    final int count = keyStarts.length;
+    if ((myFlags & SORT_INTEGER) != 0) {
+      final long[] numbers = new long[count];
+      final boolean[] found = new boolean[count];
+      for (int i = 0; i < count; i++) {
+        found[i] = parseInteger(chars, keyStarts[i], keyEnds[i], numbers, i);
+      }
+      return new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+          // Lines without a number sort before all others
+          if (found[o1] != found[o2]) {
+            return found[o1] ? 1 : -1;
+          }
+          final int res = Long.compare(numbers[o1], numbers[o2]);
+          return res != 0 ? res : Integer.compare(o1, o2);
+        }
+      };
+    }
+    else if ((myFlags & SORT_FLOAT) != 0) {
+      final double[] numbers = new double[count];
+      for (int i = 0; i < count; i++) {
+        numbers[i] = parseFloat(chars, keyStarts[i], keyEnds[i]);
+      }
+      return new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+          final int res = Double.compare(numbers[o1], numbers[o2]);
+          return res != 0 ? res : Integer.compare(o1, o2);
+        }
+      };
+    }
+    else if ((myFlags & SORT_IGNORE_CASE) != 0) {
+      final String[] keys = new String[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = chars.subSequence(keyStarts[i], keyEnds[i]).toString().toUpperCase();
+      }
+      return new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+          final int res = keys[o1].compareTo(keys[o2]);
+          return res != 0 ? res : Integer.compare(o1, o2);
+        }
+      };
+    }
+    else {
+      return new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+          final int res = compareRegions(chars, keyStarts[o1], keyEnds[o1], keyStarts[o2], keyEnds[o2], false);
+          return res != 0 ? res : Integer.compare(o1, o2);
+        }
+      };
+    }
+  }
+
+  /**
+   * Joins the lines in sorted order, backwards for <code>!</code>, optionally skipping repeated lines
+   */
+  @NotNull
+  private String join(@NotNull CharSequence chars, @NotNull Integer[] order, @NotNull int[] lineStarts,
+                      @NotNull int[] lineEnds, boolean unique) {
+    final boolean reverse = (myFlags & SORT_REVERSE) != 0;
+    final boolean ignoreCase = (myFlags & SORT_IGNORE_CASE) != 0;
+    final StringBuilder res = new StringBuilder(lineEnds[lineEnds.length - 1] - lineStarts[0]);
+    int last = -1;
+    for (int i = 0; i < order.length; i++) {
+      final int line = order[reverse ? order.length - i - 1 : i];
+      if (unique && last >= 0 &&
+          compareRegions(chars, lineStarts[line], lineEnds[line], lineStarts[last], lineEnds[last], ignoreCase) == 0) {
+        continue;
+      }
+      if (last >= 0) {
+        res.append('\n');
+      }
+      res.append(chars, lineStarts[line], lineEnds[line]);
+      last = line;
+    }
+
+    return res.toString();
+  }
+
+  private static int compareRegions(@NotNull CharSequence chars, int start1, int end1, int start2, int end2,
+                                    boolean ignoreCase) {
+    final int len1 = end1 - start1;
+    final int len2 = end2 - start2;
+    final int len = Math.min(len1, len2);
+    for (int i = 0; i < len; i++) {
+      char c1 = chars.charAt(start1 + i);
+      char c2 = chars.charAt(start2 + i);
+      if (c1 != c2) {
+        if (ignoreCase) {
+          c1 = Character.toUpperCase(c1);
+          c2 = Character.toUpperCase(c2);
+          if (c1 == c2) {
+            continue;
+          }
+        }
+        return c1 - c2;
+      }
+    }
+
+    return len1 - len2;
+  }
+
+  /**
+   * Parses the first number of the key for the <code>n</code>, <code>x</code>, <code>o</code> and <code>b</code>
+   * flags. A '-' right before the number makes it negative.
+   *
+   * @return True if a number was found, false if not
+   */
+  private boolean parseInteger(@NotNull CharSequence chars, int start, int end, @NotNull long[] numbers, int index) {
+    final int radix;
+    if ((myFlags & SORT_HEX) != 0) {
+      radix = 16;
+    }
+    else if ((myFlags & SORT_OCTAL) != 0) {
+      radix = 8;
+    }
+    else if ((myFlags & SORT_BINARY) != 0) {
+      radix = 2;
+    }
+    else {
+      radix = 10;
+    }
+
+    int pos = start;
+    while (pos < end && Character.digit(chars.charAt(pos), radix) < 0) {
+      pos++;
+    }
+    if (pos == end) {
+      return false;
+    }
+
+    final boolean negative = pos > start && chars.charAt(pos - 1) == '-';
+    if ((radix == 16 || radix == 2) && chars.charAt(pos) == '0' && pos + 2 < end &&
+        Character.toLowerCase(chars.charAt(pos + 1)) == (radix == 16 ? 'x' : 'b') &&
+        Character.digit(chars.charAt(pos + 2), radix) >= 0) {
+      pos += 2;
+    }
+
+    long value = 0;
+    for (; pos < end; pos++) {
+      final int digit = Character.digit(chars.charAt(pos), radix);
+      if (digit < 0) {
+        break;
+      }
+      if (value > (Long.MAX_VALUE - digit) / radix) {
+        value = Long.MAX_VALUE;
+      }
+      else {
+        value = value * radix + digit;
+      }
+    }
+    numbers[index] = negative ? -value : value;
+
+    return true;
+  }
+
+  /**
+   * Parses the floating point number at the start of the key for the <code>f</code> flag. An empty key sorts before
+   * any number, a key that doesn't start with a number is zero.
+   */
+  private static double parseFloat(@NotNull CharSequence chars, int start, int end) {
+    int pos = start;
+    while (pos < end && Character.isWhitespace(chars.charAt(pos))) {
+      pos++;
+    }
+    if (pos < end && chars.charAt(pos) == '+') {
+      pos++;
+      while (pos < end && Character.isWhitespace(chars.charAt(pos))) {
+        pos++;
+      }
+    }
+    if (pos == end) {
+      return -Double.MAX_VALUE;
+    }
+
+    final int numberStart = pos;
+    if (chars.charAt(pos) == '-') {
+      pos++;
+    }
+    while (pos < end && Character.isDigit(chars.charAt(pos))) {
+      pos++;
+    }
+    if (pos < end && chars.charAt(pos) == '.') {
+      pos++;
+      while (pos < end && Character.isDigit(chars.charAt(pos))) {
+        pos++;
+      }
+    }
+    if (pos < end && (chars.charAt(pos) == 'e' || chars.charAt(pos) == 'E')) {
+      int exponent = pos + 1;
+      if (exponent < end && (chars.charAt(exponent) == '-' || chars.charAt(exponent) == '+')) {
+        exponent++;
+      }
+      if (exponent < end && Character.isDigit(chars.charAt(exponent))) {
+        pos = exponent;
+        while (pos < end && Character.isDigit(chars.charAt(pos))) {
+          pos++;
+        }
+      }
+    }
+
+    try {
+      return Double.parseDouble(chars.subSequence(numberStart, pos).toString());
+    }
+    catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
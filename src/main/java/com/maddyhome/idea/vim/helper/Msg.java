@@ -28,9 +28,11 @@ public interface Msg {
   String e_argreq = "e_argreq";
   String e_noprev = "e_noprev";
   String e_nopresub = "e_nopresub";
+  String e_noprevre = "e_noprevre";
   String E191 = "E191";
   String e_backrange = "e_backrange";
   String E146 = "E146";
+  String E147 = "E147";
   String e_zerocount = "e_zerocount";
   String e_trailing = "e_trailing";
   String e_invcmd = "e_invcmd";
@@ -68,6 +70,12 @@ public interface Msg {
   String E384 = "E384";
   String E385 = "E385";
   String e_patnotf2 = "e_patnotf2";
+  String e_patfoundall = "e_patfoundall";
   String unkopt = "unkopt";
   String e_invarg = "e_invarg";
+  String e_interr = "e_interr";
+  String e_changed = "e_changed";
+  String E39 = "E39";
+  String E104 = "E104";
+  String E482 = "E482";
 }
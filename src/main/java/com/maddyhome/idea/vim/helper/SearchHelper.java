@@ -745,6 +745,23 @@ public class SearchHelper {
       logger.debug("pos=" + pos);
     }
 
+    final TextRange range = findNumberInText(text, pos, alpha, hex, octal);
+    return range != null ? new TextRange(range.getStartOffset() + offset, range.getEndOffset() + offset) : null;
+  }
+
+  /**
+   * Finds the number at or after the given position in a piece of text.
+   *
+   * @param text   The lower case text to search in
+   * @param pos    The position to start from
+   * @param alpha  True if single letters count as numbers
+   * @param hex    True if hex numbers are recognized
+   * @param octal  True if octal numbers are recognized
+   * @return The range of the number relative to the start of the text or null if there is no number after pos
+   */
+  @Nullable
+  public static TextRange findNumberInText(@NotNull final String text, int pos, final boolean alpha, final boolean hex,
+                                           final boolean octal) {
     while (true) {
       // Skip over current whitespace if any
       while (pos < text.length() && !isNumberChar(text.charAt(pos), alpha, hex, octal, true)) {
@@ -776,7 +793,7 @@ public class SearchHelper {
         // Ox and OX
         if (start >= 2 && text.substring(start - 2, start).toLowerCase().equals("0x")) {
           logger.debug("found hex");
-          return new TextRange(start - 2 + offset, end + offset);
+          return new TextRange(start - 2, end);
         }
 
         if (!isHexChar || alpha) {
@@ -799,7 +816,7 @@ public class SearchHelper {
 
       if (text.charAt(start) == '0' && end > start && !(start > 0 && isNumberChar(text.charAt(start - 1), false, false, false, true))) {
         logger.debug("found octal");
-        return new TextRange(start + offset, end + offset);
+        return new TextRange(start, end);
       }
     }
 
@@ -807,7 +824,7 @@ public class SearchHelper {
       if (logger.isDebugEnabled()) logger.debug("checking alpha for " + text.charAt(pos));
       if (isNumberChar(text.charAt(pos), true, false, false, false)) {
         if (logger.isDebugEnabled()) logger.debug("found alpha at " + pos);
-        return new TextRange(pos + offset, pos + 1 + offset);
+        return new TextRange(pos, pos + 1);
       }
     }
 
@@ -818,7 +835,7 @@ public class SearchHelper {
       start--;
     }
 
-    return new TextRange(start + offset, end + offset);
+    return new TextRange(start, end);
   }
 
   /**
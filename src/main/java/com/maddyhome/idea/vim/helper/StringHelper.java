@@ -263,6 +263,36 @@ public class StringHelper {
     return builder.toString();
   }
 
+  /**
+   * Converts the text to the key notation, but only as much of it as fits into the given width
+   */
+  @NotNull
+  public static String toKeyNotation(@NotNull String text, int width) {
+    final String head = text.length() > width ? text.substring(0, Math.max(width, 0)) : text;
+    return toKeyNotation(stringToKeys(head), width);
+  }
+
+  /**
+   * Converts the keys to the key notation, but only as many of them as fit into the given width
+   */
+  @NotNull
+  public static String toKeyNotation(@NotNull List<KeyStroke> keys, int width) {
+    if (keys.isEmpty()) {
+      return "<Nop>";
+    }
+    final StringBuilder builder = new StringBuilder();
+    for (KeyStroke key : keys) {
+      if (builder.length() >= width) {
+        break;
+      }
+      builder.append(toKeyNotation(key));
+    }
+    if (builder.length() > width) {
+      builder.setLength(width);
+    }
+    return builder.toString();
+  }
+
   @NotNull
   public static String toKeyNotation(@NotNull KeyStroke key) {
     final char c = key.getKeyChar();
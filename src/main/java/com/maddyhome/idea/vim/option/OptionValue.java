@@ -0,0 +1,52 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.option;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Typed handle to the value of an option. The value is copied into a volatile field whenever the option changes, so
+ * the code that reads it on every key stroke or repaint doesn't have to look the option up by its name.
+ */
+public abstract class OptionValue implements OptionChangeListener {
+  protected OptionValue(@NotNull String name) {
+    myName = name;
+  }
+
+  @NotNull
+  public String getName() {
+    return myName;
+  }
+
+  public void valueChange(OptionChangeEvent event) {
+    update(event.getOption());
+  }
+
+  /**
+   * Attaches the handle to its option, called once when the options are created
+   */
+  void bind(@NotNull Option option) {
+    option.addOptionChangeListener(this);
+    update(option);
+  }
+
+  protected abstract void update(@NotNull Option option);
+
+  @NotNull private final String myName;
+}
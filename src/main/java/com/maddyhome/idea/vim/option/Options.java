@@ -37,9 +37,37 @@ public class Options {
   public static final String RELATIVE_NUMBER = "relativenumber";
   public static final String NUMBER = "number";
   public static final String CLIPBOARD = "clipboard";
-  public static final String INCREMENTAL_SEARCH = "incsearch";
-  public static final String TIMEOUT = "timeout";
   public static final String VIMINFO = "viminfo";
+  public static final String ISKEYWORD = "iskeyword";
+
+  /*
+   * Handles to the options that are read on every key stroke, motion or repaint. They are bound when the options are
+   * created on the start of the plugin.
+   */
+  public static final ToggleOptionValue DIGRAPH = new ToggleOptionValue("digraph");
+  public static final ToggleOptionValue GDEFAULT = new ToggleOptionValue("gdefault");
+  public static final NumberOptionValue HISTORY = new NumberOptionValue("history");
+  public static final ToggleOptionValue HLSEARCH = new ToggleOptionValue("hlsearch");
+  public static final ToggleOptionValue IGNORECASE = new ToggleOptionValue("ignorecase");
+  public static final ToggleOptionValue INCREMENTAL_SEARCH = new ToggleOptionValue("incsearch");
+  public static final ToggleOptionValue MORE = new ToggleOptionValue("more");
+  public static final NumberOptionValue SCROLL = new NumberOptionValue("scroll");
+  public static final NumberOptionValue SCROLLJUMP = new NumberOptionValue("scrolljump");
+  public static final NumberOptionValue SCROLLOFF = new NumberOptionValue("scrolloff");
+  public static final StringOptionValue SELECTION = new StringOptionValue("selection");
+  public static final ToggleOptionValue SHOWMODE = new ToggleOptionValue("showmode");
+  public static final NumberOptionValue SIDESCROLL = new NumberOptionValue("sidescroll");
+  public static final NumberOptionValue SIDESCROLLOFF = new NumberOptionValue("sidescrolloff");
+  public static final ToggleOptionValue SMARTCASE = new ToggleOptionValue("smartcase");
+  public static final ToggleOptionValue TIMEOUT = new ToggleOptionValue("timeout");
+  public static final NumberOptionValue TIMEOUTLEN = new NumberOptionValue("timeoutlen");
+  public static final ToggleOptionValue VISUALBELL = new ToggleOptionValue("visualbell");
+  public static final ToggleOptionValue WRAPSCAN = new ToggleOptionValue("wrapscan");
+
+  private static final OptionValue[] VALUES = {
+    DIGRAPH, GDEFAULT, HISTORY, HLSEARCH, IGNORECASE, INCREMENTAL_SEARCH, MORE, SCROLL, SCROLLJUMP, SCROLLOFF,
+    SELECTION, SHOWMODE, SIDESCROLL, SIDESCROLLOFF, SMARTCASE, TIMEOUT, TIMEOUTLEN, VISUALBELL, WRAPSCAN
+  };
 
   /**
    * Gets the singleton instance of the options
@@ -438,6 +466,9 @@ public class Options {
    */
   private Options() {
     createDefaultOptions();
+    for (OptionValue value : VALUES) {
+      value.bind(getOption(value.getName()));
+    }
   }
 
   /**
@@ -449,6 +480,7 @@ public class Options {
     addOption(new NumberOption("history", "hi", 20, 1, Integer.MAX_VALUE));
     addOption(new ToggleOption("hlsearch", "hls", false));
     addOption(new ToggleOption("ignorecase", "ic", false));
+    addOption(new ListOption(ISKEYWORD, "isk", new String[]{"@", "48-57", "_", "192-255"}, null));
     addOption(new ListOption("matchpairs", "mps", new String[]{"(:)", "{:}", "[:]"}, ".:."));
     addOption(new ToggleOption("more", "more", true));
     addOption(new BoundListOption("nrformats", "nf", new String[]{"octal", "hex"}, new String[]{"octal", "hex", "alpha"}));
@@ -467,8 +499,8 @@ public class Options {
     addOption(new ToggleOption(NUMBER, "nu", false));
     addOption(new ToggleOption(RELATIVE_NUMBER, "rnu", false));
     addOption(new ListOption(CLIPBOARD, "cb", new String[]{"autoselect,exclude:cons\\|linux"}, null));
-    addOption(new ToggleOption(INCREMENTAL_SEARCH, "is", false));
-    addOption(new ToggleOption(TIMEOUT, "to", true));
+    addOption(new ToggleOption("incsearch", "is", false));
+    addOption(new ToggleOption("timeout", "to", true));
     addOption(new ListOption(VIMINFO, "vi", new String[]{"'100", "<50", "s10", "h"}, null));
 
     registerExtensionOptions();
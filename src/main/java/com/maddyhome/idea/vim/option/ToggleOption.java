@@ -114,7 +114,7 @@ public class ToggleOption extends Option {
    * Sets the option to its default value.
    */
   public void resetDefault() {
-    value = dflt;
+    update(dflt);
   }
 
   protected final boolean dflt;
@@ -105,6 +105,8 @@
  * |v_<Esc>|                {@link VisualExitModeAction}
  * |v_CTRL-C|               ...
  * |v_CTRL-\_CTRL-N|        ...
+ * |v_CTRL-A|               {@link ChangeNumberIncVisualAction}
+ * |v_CTRL-X|               {@link ChangeNumberDecVisualAction}
  * |v_<BS>|                 NVO mapping
  * |v_CTRL-H|               ...
  * |v_CTRL-V|               NVO mapping
@@ -153,6 +155,8 @@
  * |v_d|                    {@link DeleteVisualAction}
  * |v_x|                    ...
  * |v_<Del>|                ...
+ * |v_g_CTRL-A|             {@link ChangeNumberIncProgressiveVisualAction}
+ * |v_g_CTRL-X|             {@link ChangeNumberDecProgressiveVisualAction}
  * |v_gJ|                   {@link DeleteJoinVisualLinesAction}
  * |v_gp|                   {@link PutVisualTextMoveCursorAction}
  * |v_gP|                   ...
@@ -18,6 +18,8 @@
 
 package com.maddyhome.idea.vim.regexp;
 
+import com.maddyhome.idea.vim.helper.CharacterHelper;
+
 public final class CharacterClasses {
   private CharacterClasses() {
   }
@@ -70,74 +72,52 @@ public final class CharacterClasses {
   public static final int CLASS_NONE = 99;
 
   public static boolean isMask(char ch, int mask, int test) {
-    boolean res = false;
-    switch (mask) {
-      case RI_DIGIT:
-        res = isDigit(ch);
-        break;
-      case RI_HEX:
-        res = isHex(ch);
-        break;
-      case RI_OCTAL:
-        res = isOctal(ch);
-        break;
-      case RI_WORD:
-        res = isWord(ch);
-        break;
-      case RI_HEAD:
-        res = isHead(ch);
-        break;
-      case RI_ALPHA:
-        res = isAlpha(ch);
-        break;
-      case RI_LOWER:
-        res = isLower(ch);
-        break;
-      case RI_UPPER:
-        res = isUpper(ch);
-        break;
-      case RI_WHITE:
-        res = isWhite(ch);
-        break;
-    }
+    final boolean res = (CLASSES[ch] & mask) != 0;
 
     return (res == (test > 0));
   }
 
   public static boolean isDigit(char ch) {
-    return Character.isDigit(ch);
+    return (CLASSES[ch] & RI_DIGIT) != 0;
   }
 
   public static boolean isHex(char ch) {
-    return Character.digit(ch, 16) != -1;
+    return (CLASSES[ch] & RI_HEX) != 0;
   }
 
   public static boolean isOctal(char ch) {
-    return Character.digit(ch, 8) != -1;
+    return (CLASSES[ch] & RI_OCTAL) != 0;
   }
 
   public static boolean isWord(char ch) {
-    return Character.isLetterOrDigit(ch) || ch == '_';
+    return (CLASSES[ch] & RI_WORD) != 0;
+  }
+
+  /**
+   * Checks if the character is a keyword character as defined by the <code>iskeyword</code> option
+   */
+  public static boolean isKeyword(char ch) {
+    return CharacterHelper.isKeyword(ch);
   }
 
   public static boolean isHead(char ch) {
-    return Character.isLetter(ch) || ch == '_';
+    return (CLASSES[ch] & RI_HEAD) != 0;
   }
 
   public static boolean isAlpha(char ch) {
-    return Character.isLetter(ch);
+    return (CLASSES[ch] & RI_ALPHA) != 0;
   }
 
   public static boolean isLower(char ch) {
-    return Character.isLowerCase(ch);
+    return (CLASSES[ch] & RI_LOWER) != 0;
   }
 
   public static boolean isUpper(char ch) {
-    return Character.isUpperCase(ch);
+    return (CLASSES[ch] & RI_UPPER) != 0;
   }
 
   public static boolean isWhite(char ch) {
-    return Character.isWhitespace(ch);
+    return (CLASSES[ch] & RI_WHITE) != 0;
   }
 
   public static boolean isGraph(char ch) {
@@ -156,6 +136,57 @@ public final class CharacterClasses {
   }
 
   public static boolean isFile(char ch) {
-    return (isWord(ch) || "/.-+,#$%~=".indexOf(ch) != -1);
+    return (CLASSES[ch] & RI_FILE) != 0;
+  }
+
+  private static char[] buildClasses() {
+    final char[] classes = new char[Character.MAX_VALUE + 1];
+    for (int i = 0; i < classes.length; i++) {
+      final char ch = (char)i;
+      int mask = 0;
+      if (Character.isDigit(ch)) {
+        mask |= RI_DIGIT;
+      }
+      if (Character.digit(ch, 16) != -1) {
+        mask |= RI_HEX;
+      }
+      if (Character.digit(ch, 8) != -1) {
+        mask |= RI_OCTAL;
+      }
+      if (Character.isLetterOrDigit(ch) || ch == '_') {
+        mask |= RI_WORD;
+      }
+      if (Character.isLetter(ch) || ch == '_') {
+        mask |= RI_HEAD;
+      }
+      if (Character.isLetter(ch)) {
+        mask |= RI_ALPHA;
+      }
+      if (Character.isLowerCase(ch)) {
+        mask |= RI_LOWER;
+      }
+      if (Character.isUpperCase(ch)) {
+        mask |= RI_UPPER;
+      }
+      if (Character.isWhitespace(ch)) {
+        mask |= RI_WHITE;
+      }
+      if ((mask & RI_WORD) != 0 || "/.-+,#$%~=".indexOf(ch) != -1) {
+        mask |= RI_FILE;
+      }
+      classes[i] = (char)mask;
+    }
+
+    return classes;
   }
+
+  /**
+   * Not one of Vim's RI_* masks, only used for the file name class in the table below
+   */
+  private static final int RI_FILE = 0x200;
+
+  /**
+   * The class masks of every character, computed once since none of these classes depend on options
+   */
+  private static final char[] CLASSES = buildClasses();
 }
@@ -2402,8 +2402,8 @@ public class RegExp {
               return false;
             }
             else {
-              if (!CharacterClasses.isWord(c) || (reginput.pointer() > regline.pointer() &&
-                                                  CharacterClasses.isWord(reginput.charAt(-1)))) {
+              if (!CharacterClasses.isKeyword(c) || (reginput.pointer() > regline.pointer() &&
+                                                     CharacterClasses.isKeyword(reginput.charAt(-1)))) {
                 return false;
               }
             }
@@ -2413,10 +2413,10 @@ public class RegExp {
             if (reginput.equals(regline))    /* Can't match at start of line */ {
               return false;
             }
-            if (!CharacterClasses.isWord(reginput.charAt(-1))) {
+            if (!CharacterClasses.isKeyword(reginput.charAt(-1))) {
               return false;
             }
-            if (!reginput.isNul() && CharacterClasses.isWord(c)) {
+            if (!reginput.isNul() && CharacterClasses.isKeyword(c)) {
               return false;
             }
             break; /* Matched with EOW */
@@ -2443,14 +2443,14 @@ public class RegExp {
             break;
 
           case KWORD:
-            if (!CharacterClasses.isWord(reginput.charAt())) {
+            if (!CharacterClasses.isKeyword(reginput.charAt())) {
               return false;
             }
             reginput.inc();
             break;
 
           case SKWORD:
-            if (CharacterClasses.isDigit(reginput.charAt()) || !CharacterClasses.isWord(reginput.charAt())) {
+            if (CharacterClasses.isDigit(reginput.charAt()) || !CharacterClasses.isKeyword(reginput.charAt())) {
               return false;
             }
             reginput.inc();
@@ -3310,7 +3310,7 @@ public class RegExp {
       case SKWORD:
       case SKWORD + ADD_NL:
         while (count < maxcount) {
-          if (CharacterClasses.isWord(scan.charAt()) && (testval == 1 || !Character.isDigit(scan.charAt()))) {
+          if (CharacterClasses.isKeyword(scan.charAt()) && (testval == 1 || !CharacterClasses.isDigit(scan.charAt()))) {
             scan.inc();
           }
           else if (scan.isNul()) {
@@ -4710,11 +4710,11 @@ public class RegExp {
     @NotNull lpos_T pos = new lpos_T();
   }
 
-  private static class regmatch_T {
-    regprog_T regprog;
-    @NotNull CharPointer[] startp = new CharPointer[NSUBEXP];
-    @NotNull CharPointer[] endp = new CharPointer[NSUBEXP];
-    boolean rm_ic;
+  public static class regmatch_T {
+    public regprog_T regprog;
+    @NotNull public CharPointer[] startp = new CharPointer[NSUBEXP];
+    @NotNull public CharPointer[] endp = new CharPointer[NSUBEXP];
+    public boolean rm_ic;
   }
 
   public static class regmmatch_T {
@@ -221,7 +221,7 @@ public class ExEntryPanel extends JPanel {
   }
 
   private boolean isIncSearchEnabled(@NotNull String labelText) {
-    return (labelText.equals("/") || labelText.equals("?")) && Options.getInstance().isSet(Options.INCREMENTAL_SEARCH);
+    return (labelText.equals("/") || labelText.equals("?")) && Options.INCREMENTAL_SEARCH.get();
   }
 
   /**
@@ -36,16 +36,19 @@ import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * This panel displays text in a <code>more</code> like window.
+ * This panel displays text in a <code>more</code> like window. The lines are shown in a list with a fixed cell height,
+ * so only the visible lines are rendered no matter how long the output is.
  */
 public class ExOutputPanel extends JPanel {
   @NotNull private final Editor myEditor;
 
   @NotNull private final JLabel myLabel = new JLabel("more");
-  @NotNull private final JTextArea myText = new JTextArea();
+  @NotNull private final LinesModel myLines = new LinesModel();
+  @NotNull private final JList<String> myText = new JList<String>(myLines);
   @NotNull private final JScrollPane myScrollPane =
     new JBScrollPane(myText, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
   @NotNull private final ComponentAdapter myAdapter;
@@ -77,7 +80,18 @@ public class ExOutputPanel extends JPanel {
     setForeground(myText.getForeground());
     setBackground(myText.getBackground());
 
-    myText.setEditable(false);
+    myText.setCellRenderer(new LineRenderer());
+
+    // The output is only for reading, the lines are never selected
+    myText.setSelectionModel(new DefaultListSelectionModel() {
+      @Override
+      public void setSelectionInterval(int index0, int index1) {
+      }
+
+      @Override
+      public void addSelectionInterval(int index0, int index1) {
+      }
+    });
 
     setBorder(BorderFactory.createEtchedBorder());
 
@@ -103,14 +117,9 @@ public class ExOutputPanel extends JPanel {
     return panel;
   }
 
-  public void setText(@NotNull String data) {
-    if (data.length() > 0 && data.charAt(data.length() - 1) == '\n') {
-      data = data.substring(0, data.length() - 1);
-    }
-
-    myText.setText(data);
-    myText.setCaretPosition(0);
-    if (data.length() > 0) {
+  public void setLines(@NotNull List<String> lines) {
+    myLines.setLines(lines);
+    if (!lines.isEmpty()) {
       activate();
     }
   }
@@ -121,7 +130,7 @@ public class ExOutputPanel extends JPanel {
   public void deactivate(boolean refocusOwningEditor) {
     if (!myActive) return;
     myActive = false;
-    myText.setText("");
+    myLines.setLines(Collections.<String>emptyList());
     if (refocusOwningEditor) {
       UiHelper.requestFocus(myEditor.getContentComponent());
     }
@@ -164,24 +173,10 @@ public class ExOutputPanel extends JPanel {
     final Font font = UiHelper.getEditorFont();
     myText.setFont(font);
     myLabel.setFont(font);
-  }
-
-  private static int countLines(@NotNull String text) {
-    if (text.length() == 0) {
-      return 0;
-    }
-
-    int count = 0;
-    int pos = -1;
-    while ((pos = text.indexOf('\n', pos + 1)) != -1) {
-      count++;
-    }
-
-    if (text.charAt(text.length() - 1) != '\n') {
-      count++;
-    }
-
-    return count;
+    // A fixed cell size keeps the list from measuring every line
+    final FontMetrics metrics = myText.getFontMetrics(font);
+    myText.setFixedCellHeight(metrics.getHeight());
+    myText.setFixedCellWidth(1);
   }
 
   private void scrollLine() {
@@ -232,7 +227,7 @@ public class ExOutputPanel extends JPanel {
     setSize(scroll.getSize());
 
     myLineHeight = myText.getFontMetrics(myText.getFont()).getHeight();
-    int count = countLines(myText.getText());
+    int count = myLines.getSize();
     int visLines = getSize().height / myLineHeight - 1;
     int lines = Math.min(count, visLines);
     setSize(getSize().width, lines * myLineHeight + myLabel.getPreferredSize().height +
@@ -248,7 +243,7 @@ public class ExOutputPanel extends JPanel {
     setBounds(bounds);
 
     myScrollPane.getVerticalScrollBar().setValue(0);
-    if (!Options.getInstance().isSet("more")) {
+    if (!Options.MORE.get()) {
       // FIX
       scrollOffset(100000);
     }
@@ -278,6 +273,69 @@ public class ExOutputPanel extends JPanel {
     });
   }
 
+  private static class LinesModel extends AbstractListModel<String> {
+    @NotNull private List<String> myLines = Collections.emptyList();
+
+    public void setLines(@NotNull List<String> lines) {
+      final int oldSize = myLines.size();
+      myLines = lines;
+      if (oldSize > 0) {
+        fireIntervalRemoved(this, 0, oldSize - 1);
+      }
+      if (!lines.isEmpty()) {
+        fireIntervalAdded(this, 0, lines.size() - 1);
+      }
+    }
+
+    public int getSize() {
+      return myLines.size();
+    }
+
+    public String getElementAt(int index) {
+      return myLines.get(index);
+    }
+  }
+
+  /**
+   * Renders a line as plain text with its tabs expanded, like the text area used before the list
+   */
+  private static class LineRenderer extends DefaultListCellRenderer {
+    public LineRenderer() {
+      putClientProperty("html.disable", Boolean.TRUE);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected,
+                                                  boolean cellHasFocus) {
+      super.getListCellRendererComponent(list, null, index, false, false);
+      setText(expandTabs(String.valueOf(value)));
+      return this;
+    }
+
+    @NotNull
+    private static String expandTabs(@NotNull String line) {
+      if (line.indexOf('\t') < 0) {
+        return line;
+      }
+      final StringBuilder res = new StringBuilder(line.length() + TAB_SIZE);
+      for (int i = 0; i < line.length(); i++) {
+        final char c = line.charAt(i);
+        if (c == '\t') {
+          do {
+            res.append(' ');
+          }
+          while (res.length() % TAB_SIZE != 0);
+        }
+        else {
+          res.append(c);
+        }
+      }
+      return res.toString();
+    }
+
+    private static final int TAB_SIZE = 8;
+  }
+
   private static class MoreKeyListener extends KeyAdapter {
     private final ExOutputPanel myExOutputPanel;
 
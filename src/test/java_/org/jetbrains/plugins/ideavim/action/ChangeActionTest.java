@@ -276,6 +276,30 @@ public abstract class ChangeActionTest extends VimTestCase {
            "quux\n");
   }
 
+  public void testDeleteVisualBlockAfterGrowingAndShrinking() {
+    doTest(parseKeys("<C-V>", "ljjjkk", "d"),
+           "<caret>foo\n" +
+           "bar\n" +
+           "baz\n" +
+           "quux\n",
+           "<caret>o\n" +
+           "r\n" +
+           "baz\n" +
+           "quux\n");
+  }
+
+  public void testDeleteVisualBlockAcrossItsStartLine() {
+    doTest(parseKeys("<C-V>", "lkkjjj", "d"),
+           "foo\n" +
+           "bar\n" +
+           "<caret>baz\n" +
+           "quux\n",
+           "foo\n" +
+           "bar\n" +
+           "<caret>z\n" +
+           "ux\n");
+  }
+
   public void testDeleteCharVisualBlock() {
     doTest(parseKeys("<C-V>", "jjl", "x"),
            "<caret>foo\n" +
@@ -323,6 +347,26 @@ public abstract class ChangeActionTest extends VimTestCase {
            "foo  bar");
   }
 
+  public void testDeleteJoinLinesBlankLinesInRange() {
+    doTest(parseKeys("5J"),
+           "<caret>foo\n" +
+           "\n" +
+           "   \n" +
+           "  bar\n" +
+           "\tbaz  \n" +
+           "quux\n",
+           "foo bar baz  \n" +
+           "quux\n");
+  }
+
+  public void testDeleteJoinLinesKeepsMarks() {
+    myFixture.configureByText("a.java", "<caret>foo\n" +
+                                        "  bar\n" +
+                                        "baz\n");
+    typeText(parseKeys("j$", "ma", "gg", "3J", "`a", "i!<Esc>"));
+    myFixture.checkResult("foo ba!r baz\n");
+  }
+
   public void testDeleteJoinVisualLinesSpaces() {
     doTest(parseKeys("v2jJ"),
            "    a<caret> 1\n" +
@@ -446,6 +490,64 @@ public abstract class ChangeActionTest extends VimTestCase {
            "fo<caret>o quux\n");
   }
 
+  public void testCountedInsert() {
+    doTest(parseKeys("3i", "ab", "<Esc>"),
+           "<caret>x\n",
+           "ababa<caret>bx\n");
+  }
+
+  public void testRepeatWithCountAndBackspace() {
+    doTest(parseKeys("i", "foo", "<BS>", "x", "<Esc>", "j0", "3."),
+           "<caret>a\n" +
+           "b\n",
+           "foxa\n" +
+           "foxfoxfo<caret>xb\n");
+  }
+
+  public void testMotionWithMultipleCarets() {
+    doTest(parseKeys("2l"),
+           "<caret>abcd\n" +
+           "<caret>efgh\n",
+           "ab<caret>cd\n" +
+           "ef<caret>gh\n");
+  }
+
+  public void testWordMotionWithMultipleCarets() {
+    doTest(parseKeys("w"),
+           "<caret>foo bar\n" +
+           "baz <caret>quux one\n",
+           "foo <caret>bar\n" +
+           "baz quux <caret>one\n");
+  }
+
+  public void testDeleteWordWithMultipleCarets() {
+    doTest(parseKeys("dw"),
+           "<caret>foo bar\n" +
+           "baz <caret>quux one\n" +
+           "<caret>two three\n",
+           "<caret>bar\n" +
+           "baz <caret>one\n" +
+           "<caret>three\n");
+  }
+
+  public void testPutDeletedTextOfEachCaret() {
+    doTest(parseKeys("x", "p"),
+           "<caret>ab\n" +
+           "<caret>cd\n",
+           "b<caret>a\n" +
+           "d<caret>c\n");
+  }
+
+  public void testVerticalMotionKeepsColumnOfEachCaret() {
+    doTest(parseKeys("l", "j"),
+           "<caret>abcd\n" +
+           "ab<caret>cd\n" +
+           "efgh\n",
+           "abcd\n" +
+           "a<caret>bcd\n" +
+           "efg<caret>h\n");
+  }
+
   // VIM-511 |.|
   public void testRepeatWithParensAndQuotesAutoInsertion() {
     configureByJavaText("class C <caret>{\n" +
@@ -119,4 +119,34 @@ public abstract class ChangeNumberActionTest extends VimTestCase {
   public void testIncrementLocatesNumberOnTheSameLine() {
     doTest(parseKeys("<C-A>"), "foo ->* bar 123\n", "foo ->* bar 12<caret>4\n");
   }
+
+  public void testIncrementVisualLines() {
+    doTest(parseKeys("Vj<C-A>"), "1 a\n2 b\n3 c\n", "2 a\n3 b\n3 c\n");
+  }
+
+  public void testIncrementVisualLinesWithCount() {
+    doTest(parseKeys("Vjj5<C-A>"), "x 1\nno number\ny -7\n", "x 6\nno number\ny -2\n");
+  }
+
+  public void testIncrementVisualLinesProgressively() {
+    doTest(parseKeys("Vjjg<C-A>"), "0\n0\n0\n", "1\n2\n3\n");
+  }
+
+  public void testDecrementVisualBlockOnlyChangesSelectedColumns() {
+    doTest(parseKeys("<C-V>jl<C-X>"), "10 10\n20 20\n", "9 10\n19 20\n");
+  }
+
+  public void testReselectAfterVisualIncrement() {
+    doTest(parseKeys("Vjjg<C-A>", "gv", "g<C-A>"), "0\n0\n0\n", "2\n4\n6\n");
+  }
+
+  public void testIncrementVisualLinesKeepsMarks() {
+    myFixture.configureByText("a.txt", "<caret>1\nx 2\n3\n");
+    typeText(parseKeys("j$", "ma", "gg", "Vjj<C-A>", "`a", "i!<Esc>"));
+    myFixture.checkResult("2\nx !3\n4\n");
+  }
+
+  public void testIncrementVisualLinesAfterDottedCapitalI() {
+    doTest(parseKeys("Vj<C-A>"), "\u0130 1\n\u0130\u0130 2\n", "\u0130 2\n\u0130\u0130 3\n");
+  }
 }
@@ -171,4 +171,35 @@ public abstract class CopyActionTest extends VimTestCase {
                             "baz\n");
     }
   }
+
+  public void testCountedLinePut() {
+    typeTextInFile(parseKeys("yy", "3p"),
+                   "<caret>foo\n" +
+                   "bar\n");
+    myFixture.checkResult("foo\n" +
+                          "foo\n" +
+                          "foo\n" +
+                          "foo\n" +
+                          "bar\n");
+  }
+
+  public void testCountedBlockPut() {
+    typeTextInFile(parseKeys("<C-V>j", "y", "3p"),
+                   "<caret>foo\n" +
+                   "bar\n" +
+                   "baz\n");
+    myFixture.checkResult("ffffoo\n" +
+                          "bbbbar\n" +
+                          "baz\n");
+  }
+
+  public void testBlockPutKeepsMarks() {
+    typeTextInFile(parseKeys("jmagg", "<C-V>j", "y", "p", "'a", "D"),
+                   "<caret>foo\n" +
+                   "bar\n" +
+                   "baz\n");
+    myFixture.checkResult("ffoo\n" +
+                          "\n" +
+                          "baz\n");
+  }
 }
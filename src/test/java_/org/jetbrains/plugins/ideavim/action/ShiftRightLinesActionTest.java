@@ -82,4 +82,28 @@ public abstract class ShiftRightLinesActionTest extends VimTestCase {
     typeText(parseKeys("<C-V>jjl>"));
     myFixture.checkResult("foo    foo\nfoo    bar\nfoo    baz\n");
   }
+
+  public void testShiftsVisualBlockModeLeft() {
+    myFixture.configureByText("a.txt", "foo<caret>      foo\nfoo  bar\nfoo\nfoo baz\n");
+    typeText(parseKeys("<C-V>jjj<"));
+    myFixture.checkResult("foo  foo\nfoobar\nfoo\nfoobaz\n");
+  }
+
+  public void testShiftMultiLineSelectionUndoesInOneStep() {
+    myFixture.configureByText("a.txt", "<caret>a\nb\nc\n");
+    typeText(parseKeys("Vjj>", "u"));
+    myFixture.checkResult("a\nb\nc\n");
+  }
+
+  public void testReselectAfterShift() {
+    myFixture.configureByText("a.txt", "<caret>a\nb\nc\nd\n");
+    typeText(parseKeys("Vjj>", "gv", "d"));
+    myFixture.checkResult("d\n");
+  }
+
+  public void testShiftKeepsMarks() {
+    myFixture.configureByText("a.txt", "<caret>a\nb\nc\n");
+    typeText(parseKeys("j", "ma", "gg", "3>>", "'a", "A!<Esc>"));
+    myFixture.checkResult("    a\n    b!\n    c\n");
+  }
 }
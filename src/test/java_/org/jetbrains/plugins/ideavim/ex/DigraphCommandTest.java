@@ -0,0 +1,74 @@
+package org.jetbrains.plugins.ideavim.ex;
+
+import com.maddyhome.idea.vim.VimPlugin;
+import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.ex.ExOutputModel;
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
+
+/**
+ * Tests for :digraph
+ */
+public abstract class DigraphCommandTest extends VimTestCase {
+  // |:digraph|
+  public void testDefineDigraph() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraph xz 8364"));
+    typeText(parseKeys("i<C-K>xz<Esc>"));
+    myFixture.checkResult("€\n");
+  }
+
+  public void testDefinedDigraphInReverseOrder() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraph qy 65"));
+    typeText(parseKeys("i<C-K>yq<Esc>"));
+    myFixture.checkResult("A\n");
+  }
+
+  public void testDefineSeveralDigraphs() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraph k1 66 k2 67"));
+    typeText(parseKeys("i<C-K>k1<C-K>k2<Esc>"));
+    myFixture.checkResult("BC\n");
+  }
+
+  public void testListingSkipsOverriddenDefaultDigraph() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraph a: 9731"));
+    typeText(commandToKeys("digraphs"));
+    final String output = ExOutputModel.getInstance(myFixture.getEditor()).getText();
+    assertNotNull(output);
+    assertTrue(output.contains("a: \u2603"));
+    assertFalse(output.contains("a: \u00e4"));
+  }
+
+  public void testMissingNumber() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraph ab x"));
+    assertPluginError(true);
+    try {
+      VimPlugin.getDigraph().defineDigraphs("ab x");
+      fail("Expected E39");
+    }
+    catch (ExException e) {
+      assertEquals("E39: Number expected", e.getMessage());
+    }
+  }
+
+  public void testEscapeNotAllowed() {
+    try {
+      VimPlugin.getDigraph().defineDigraphs("\u001ba 65");
+      fail("Expected E104");
+    }
+    catch (ExException e) {
+      assertEquals("E104: Escape not allowed in digraph", e.getMessage());
+    }
+  }
+
+  public void testIncompleteDigraph() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraph a"));
+    assertPluginError(true);
+  }
+}
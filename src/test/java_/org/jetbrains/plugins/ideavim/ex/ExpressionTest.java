@@ -0,0 +1,53 @@
+package org.jetbrains.plugins.ideavim.ex;
+
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+/**
+ * Tests for VimScript expressions
+ */
+public abstract class ExpressionTest extends VimTestCase {
+  public void testArithmetic() {
+    configureByText("\n");
+    typeText(commandToKeys("echo 1 + 2 * 3 - 10 / 4 % 3"));
+    assertExOutput("5\n");
+  }
+
+  public void testConcatenation() {
+    configureByText("\n");
+    typeText(commandToKeys("echo 'foo' . \"bar\\t\" . 42"));
+    assertExOutput("foobar\t42\n");
+  }
+
+  public void testLetWithExpression() {
+    configureByText("\n");
+    typeText(commandToKeys("let g:count = 2"));
+    typeText(commandToKeys("let count += 3"));
+    typeText(commandToKeys("echo count > 4 ? toupper('yes') : 'no'"));
+    assertExOutput("YES\n");
+  }
+
+  public void testListIndexAndSlice() {
+    configureByText("\n");
+    typeText(commandToKeys("let l = [1, 'two', 3]"));
+    typeText(commandToKeys("echo l[-1] . l[1][1:] . len(l[:1])"));
+    assertExOutput("3wo2\n");
+  }
+
+  public void testMatchUsesVimPatterns() {
+    configureByText("\n");
+    typeText(commandToKeys("echo ('foo bar' =~ '\\<bar\\>') . ('foobar' =~ '\\<bar\\>') . ('aaa' =~ '\\v^a{3}$')"));
+    assertExOutput("101\n");
+  }
+
+  public void testMatchIgnoringCase() {
+    configureByText("\n");
+    typeText(commandToKeys("echo ('FOO' =~? 'foo') . ('FOO' =~# 'foo') . ('FOO' !~# 'foo')"));
+    assertExOutput("101\n");
+  }
+
+  public void testUnknownFunction() {
+    configureByText("\n");
+    typeText(commandToKeys("echo foo(1)"));
+    assertPluginError(true);
+  }
+}
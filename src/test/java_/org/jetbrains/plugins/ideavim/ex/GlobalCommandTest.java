@@ -0,0 +1,114 @@
+package org.jetbrains.plugins.ideavim.ex;
+
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
+
+/**
+ * Tests for :global and :vglobal
+ */
+public abstract class GlobalCommandTest extends VimTestCase {
+  // |:global|
+  public void testDeleteMatchingLines() {
+    doTest("g/DEBUG/d",
+           "<caret>INFO one\n" +
+           "DEBUG two\n" +
+           "DEBUG three\n" +
+           "INFO four\n" +
+           "DEBUG five\n",
+           "INFO one\n" +
+           "INFO four\n");
+  }
+
+  // |:vglobal|
+  public void testDeleteNonMatchingLines() {
+    doTest("v/DEBUG/d",
+           "<caret>INFO one\n" +
+           "DEBUG two\n" +
+           "INFO three\n",
+           "DEBUG two\n");
+  }
+
+  public void testBangInvertsMatch() {
+    doTest("g!/DEBUG/d",
+           "<caret>INFO one\n" +
+           "DEBUG two\n" +
+           "INFO three\n",
+           "DEBUG two\n");
+  }
+
+  public void testSubstituteOnMatchingLines() {
+    doTest("g/a/s/x/y/",
+           "<caret>ax\n" +
+           "bx\n" +
+           "cax\n",
+           "ay\n" +
+           "bx\n" +
+           "cay\n");
+  }
+
+  public void testMoveMatchingLinesToTopReverses() {
+    doTest("g/^/m0",
+           "<caret>one\n" +
+           "two\n" +
+           "three\n",
+           "three\n" +
+           "two\n" +
+           "one\n");
+  }
+
+  public void testDeleteFollowingLineSkipsDeletedMark() {
+    doTest("g/a/.,+1d",
+           "<caret>a1\n" +
+           "a2\n" +
+           "b3\n" +
+           "a4\n" +
+           "b5\n",
+           "b3\n");
+  }
+
+  public void testJoinSkipsJoinedLines() {
+    doTest("g/^/j",
+           "<caret>one\n" +
+           "two\n" +
+           "three\n" +
+           "four\n" +
+           "five\n",
+           "one two\n" +
+           "three four\n" +
+           "five\n");
+  }
+
+  public void testRange() {
+    doTest("2,3g/a/d",
+           "<caret>a1\n" +
+           "a2\n" +
+           "a3\n" +
+           "a4\n",
+           "a1\n" +
+           "a4\n");
+  }
+
+  public void testDeleteLastLineWithoutLineBreak() {
+    doTest("g/b/d",
+           "<caret>a\n" +
+           "b",
+           "a");
+  }
+
+  public void testDeleteKeepsMarksOnOtherLines() {
+    myFixture.configureByText("a.java", "<caret>x1\n" +
+                                        "keep\n" +
+                                        "x2\n");
+    typeText(parseKeys("j", "ma", "gg"));
+    typeText(commandToKeys("g/x/d"));
+    typeText(parseKeys("'a", "A!<Esc>"));
+    myFixture.checkResult("keep!\n");
+  }
+
+  private void doTest(final String command, String before, String after) {
+    myFixture.configureByText("a.java", before);
+    typeText(commandToKeys(command));
+    myFixture.checkResult(after);
+  }
+}
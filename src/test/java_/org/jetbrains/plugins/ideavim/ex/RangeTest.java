@@ -2,6 +2,8 @@ package org.jetbrains.plugins.ideavim.ex;
 
 import org.jetbrains.plugins.ideavim.VimTestCase;
 
+import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
+
 /**
  * @author Tuomas Tynkkynen
  */
@@ -119,4 +121,21 @@ public abstract class RangeTest extends VimTestCase {
     typeText(commandToKeys("/bar//foo/d"));
     myFixture.checkResult("a\nfoo\nbar\nbar\nbaz\n");
   }
+
+  public void testRepeatedCommandResolvesCurrentLineAgain() {
+    myFixture.configureByText("a.txt", "1\n2\n<caret>3\n4\n5\n");
+    typeText(commandToKeys(".d"));
+    typeText(commandToKeys("1"));
+    typeText(commandToKeys(".d"));
+    myFixture.checkResult("2\n4\n5\n");
+  }
+
+  public void testRepeatedLastSearchRangeUsesCurrentPattern() {
+    myFixture.configureByText("a.txt", "<caret>a\nfoo\nbar\nfoo\nbar\n");
+    typeText(parseKeys("/foo", "<Enter>"));
+    typeText(commandToKeys("\\/d"));
+    typeText(parseKeys("/bar", "<Enter>"));
+    typeText(commandToKeys("\\/d"));
+    myFixture.checkResult("a\nfoo\nbar\n");
+  }
 }
@@ -98,4 +98,47 @@ public abstract class SortCommandTest extends VimTestCase {
     typeText(commandToKeys("sort"));
     myFixture.checkResult(" a\n b\n c\n whatever\n zee");
   }
+
+  public void testUniqueSort() {
+    myFixture.configureByText("a.txt", "b\na\nb\nc\na");
+    typeText(commandToKeys("sort u"));
+    myFixture.checkResult("a\nb\nc");
+  }
+
+  public void testHexSort() {
+    myFixture.configureByText("a.txt", "0x1F\nzz\n0xa\n-0x2");
+    typeText(commandToKeys("sort x"));
+    myFixture.checkResult("zz\n-0x2\n0xa\n0x1F");
+  }
+
+  public void testFloatSort() {
+    myFixture.configureByText("a.txt", "1.5\n-2e1\n0.25");
+    typeText(commandToKeys("sort f"));
+    myFixture.checkResult("-2e1\n0.25\n1.5");
+  }
+
+  public void testPatternSort() {
+    myFixture.configureByText("a.txt", "a3 z\nb1 y\nc2 x");
+    typeText(commandToKeys("sort /\\a\\d /"));
+    myFixture.checkResult("c2 x\nb1 y\na3 z");
+  }
+
+  public void testPatternMatchNumberSort() {
+    myFixture.configureByText("a.txt", "x10 y1\nx2 y3\nx7 y2");
+    typeText(commandToKeys("sort /y\\d/ nr"));
+    myFixture.checkResult("x10 y1\nx7 y2\nx2 y3");
+  }
+
+  public void testUniqueIgnoreCaseReverseSort() {
+    myFixture.configureByText("a.txt", "b\nA\nB\na\nc");
+    typeText(commandToKeys("sort ui!"));
+    myFixture.checkResult("c\nB\na");
+  }
+
+  public void testEmptyPatternUsesLastSearch() {
+    myFixture.configureByText("a.txt", "a3 z\nb1 y\nc2 x");
+    typeText(stringToKeys("/\\d<Enter>"));
+    typeText(commandToKeys("sort // r"));
+    myFixture.checkResult("b1 y\nc2 x\na3 z");
+  }
 }
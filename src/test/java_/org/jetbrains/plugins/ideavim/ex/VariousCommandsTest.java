@@ -1,6 +1,7 @@
 package org.jetbrains.plugins.ideavim.ex;
 
 import com.maddyhome.idea.vim.command.CommandState;
+import com.maddyhome.idea.vim.helper.LatencyStats;
 import org.jetbrains.plugins.ideavim.VimTestCase;
 
 import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
@@ -38,4 +39,67 @@ public abstract class VariousCommandsTest extends VimTestCase {
     myFixture.checkResult("f<caret>oo\n" +
                           "bar\n");
   }
+
+  // |:move|
+  public void testMoveLinesDown() {
+    configureByText("<caret>one\n" +
+                    "two\n" +
+                    "three\n" +
+                    "four\n");
+    typeText(commandToKeys("1,2m$"));
+    myFixture.checkResult("three\n" +
+                          "four\n" +
+                          "one\n" +
+                          "<caret>two\n");
+  }
+
+  // |:move|
+  public void testMoveLastLineWithoutLineBreakToTop() {
+    configureByText("one\n" +
+                    "<caret>two");
+    typeText(commandToKeys("m0"));
+    myFixture.checkResult("<caret>two\n" +
+                          "one");
+  }
+
+  // |:copy|
+  public void testCopyLinesAfterLastLineWithoutLineBreak() {
+    configureByText("<caret>one\n" +
+                    "two");
+    typeText(commandToKeys("1t$"));
+    myFixture.checkResult("one\n" +
+                          "two\n" +
+                          "<caret>one");
+  }
+
+  // |:t|
+  public void testRepeatCopyCurrentLine() {
+    configureByText("<caret>one\n" +
+                    "two\n");
+    typeText(commandToKeys("t."));
+    typeText(parseKeys("2@:"));
+    myFixture.checkResult("one\n" +
+                          "one\n" +
+                          "one\n" +
+                          "<caret>one\n" +
+                          "two\n");
+  }
+
+  // |:vimstats|
+  public void testVimStatsRecordsKeys() {
+    configureByText("<caret>one\n" +
+                    "two\n");
+    typeText(commandToKeys("vimstats clear"));
+    typeText(commandToKeys("vimstats on"));
+    try {
+      typeText(parseKeys("jx"));
+      assertTrue(LatencyStats.report().get(1).matches("key +[1-9].*"));
+    }
+    finally {
+      typeText(commandToKeys("vimstats off"));
+      LatencyStats.clear();
+    }
+    myFixture.checkResult("one\n" +
+                          "<caret>wo\n");
+  }
 }